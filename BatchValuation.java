@@ -0,0 +1,169 @@
+package stock;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The values of many portfolios on the same dates, as a dense matrix with a row per
+ * portfolio and a column per date. The price histories of every stock any of the portfolios
+ * holds are gathered before the valuation starts, so each is loaded once for the whole batch,
+ * and the portfolios are then valued independently, split across the threads of a fork-join
+ * pool.
+ */
+public final class BatchValuation {
+  // portfolios per task: enough work to be worth a task, few enough to balance well
+  private static final int LEAF_SIZE = 64;
+
+  private final List<String> names;
+  private final List<LocalDate> dates;
+  private final double[][] values;
+  private final String[] errors;
+  private final long elapsedNanos;
+
+  private BatchValuation(List<String> names, List<LocalDate> dates, double[][] values,
+                         String[] errors, long elapsedNanos) {
+    this.names = names;
+    this.dates = dates;
+    this.values = values;
+    this.errors = errors;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Values portfolios on several dates.
+   *
+   * @param portfolios represents the portfolios, one row each
+   * @param dates      represents the dates, one column each
+   * @param histories  represents the price history of every stock the portfolios hold, by
+   *                   upper case ticker
+   * @param pool       represents the pool the portfolios are valued on
+   * @param startNanos represents when the batch started, from System.nanoTime, so the time
+   *                   spent loading histories counts towards the throughput
+   * @return the values; a portfolio that can't be valued on a date, because it holds a stock
+   *         outside the stock's history, has NaN for every date and the reason as its error
+   */
+  static BatchValuation compute(List<BetterPortfolio> portfolios, List<LocalDate> dates,
+                                Map<String, PriceSeries> histories, ForkJoinPool pool,
+                                long startNanos) {
+    PortfolioValuation valuation = new PortfolioValuation(dates);
+    double[][] values = new double[portfolios.size()][];
+    String[] errors = new String[portfolios.size()];
+    pool.invoke(new Rows(portfolios, valuation, histories, values, errors, 0,
+            portfolios.size()));
+
+    String[] names = new String[portfolios.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = portfolios.get(i).getName();
+    }
+    return new BatchValuation(List.of(names), List.copyOf(dates), values, errors,
+            System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Values a run of portfolios, splitting it in half until it is a single leaf.
+   */
+  private static final class Rows extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<BetterPortfolio> portfolios;
+    private final PortfolioValuation valuation;
+    private final Map<String, PriceSeries> histories;
+    private final double[][] values;
+    private final String[] errors;
+    private final int from;
+    private final int to;
+
+    private Rows(List<BetterPortfolio> portfolios, PortfolioValuation valuation,
+                 Map<String, PriceSeries> histories, double[][] values, String[] errors,
+                 int from, int to) {
+      this.portfolios = portfolios;
+      this.valuation = valuation;
+      this.histories = histories;
+      this.values = values;
+      this.errors = errors;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > LEAF_SIZE) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Rows(portfolios, valuation, histories, values, errors, from, middle),
+                new Rows(portfolios, valuation, histories, values, errors, middle, to));
+        return;
+      }
+      for (int i = from; i < to; i++) {
+        try {
+          values[i] = valuation.value(portfolios.get(i).getLedger(),
+                  ticker -> histories.get(ticker.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+          values[i] = new double[valuation.size()];
+          Arrays.fill(values[i], Double.NaN);
+          errors[i] = e.getMessage();
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the names of the portfolios, in the order of the rows.
+   *
+   * @return the portfolio names
+   */
+  public List<String> getNames() {
+    return names;
+  }
+
+  /**
+   * Gets the dates, in the order of the columns.
+   *
+   * @return the dates
+   */
+  public List<LocalDate> getDates() {
+    return dates;
+  }
+
+  /**
+   * Gets the value of a portfolio on a date.
+   *
+   * @param row    represents the portfolio
+   * @param column represents the date
+   * @return the value, or NaN if the portfolio couldn't be valued
+   */
+  public double getValue(int row, int column) {
+    return values[row][column];
+  }
+
+  /**
+   * Gets why a portfolio couldn't be valued.
+   *
+   * @param row represents the portfolio
+   * @return the reason, or null if the portfolio was valued on every date
+   */
+  public String getError(int row) {
+    return errors[row];
+  }
+
+  /**
+   * Gets how long the batch took, including loading the price histories.
+   *
+   * @return the time in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Gets the number of portfolios valued per second.
+   *
+   * @return the throughput
+   */
+  public double getThroughput() {
+    return names.size() / Math.max(elapsedNanos / 1e9, 1e-9);
+  }
+}
@@ -36,6 +36,7 @@ public class BetterPortfolio {
   private String name;
   private List<Transaction> transactions;
   private Document portfolios;
+  private final HoldingsLedger ledger;
 
   /**
    * Constructs a portfolio given a list of stocks.
@@ -45,8 +46,7 @@ public class BetterPortfolio {
     this.name = name;
     this.transactions = new ArrayList<>();
     this.portfolios = createDocument();
-    // Register the portfolio in the StockModel
-    StockModel.getInstance().addPortfolio(this);
+    this.ledger = new HoldingsLedger(stocks);
   }
 
   /**
@@ -75,6 +75,7 @@ public class BetterPortfolio {
     if (!stockExists) {
       Stock s = new Stock(ticker, quantity, date);
       this.stocks.add(s);
+      ledger.add(s);
       transactions.add(new Transaction(ticker, quantity, date, Purchase));
       addNew(ticker, quantity, date);
     }
@@ -96,7 +97,7 @@ public class BetterPortfolio {
       }
       if (isNewStock) {
         // redundant and can be simplified
-        stock.setShares(this.getValidShares(ticker, date) + quantity);
+        setShares(stock, this.getValidShares(ticker, date) + quantity);
         transactions.add(new Transaction(ticker, quantity, date, Purchase));
         editExisting(ticker, quantity);
       } else {
@@ -104,6 +105,7 @@ public class BetterPortfolio {
         //not adding to same stock but object but creating new one as each purchase is date specific
         Stock s = new Stock(ticker, quantity, date);
         stocks.add(s);
+        ledger.add(s);
         addNew(ticker, quantity, date);
         transactions.add(new Transaction(ticker, quantity, date, Purchase));
         break;
@@ -213,7 +215,7 @@ public class BetterPortfolio {
     for (Stock stock : stocks) {
       if (stock.getDate().equals(date) &&
               validTransaction(ticker, date)) {
-        stock.setShares(stock.getShares() - quantity);
+        setShares(stock, stock.getShares() - quantity);
         // remove completely and add to transaction
         transactions.add(new Transaction(ticker, quantity, date, Sale));
         removeFromDoc(ticker, quantity, date);
@@ -222,7 +224,7 @@ public class BetterPortfolio {
       else if (validTransaction(ticker, date)
               && stock.getShares() - quantity > 0) {
         // edit the amount of shared
-        stock.setShares(stock.getShares() - quantity);
+        setShares(stock, stock.getShares() - quantity);
         transactions.add(new Transaction(ticker, quantity, date, Sale));
         // edits existing stock
         editExisting(ticker, -quantity);
@@ -234,22 +236,22 @@ public class BetterPortfolio {
   }
 
   /**
-   * @param date    the date at which the user wishes to rebalance the portfolio
-   * @param weights list of new corresponding (indices align with indices of 'stocks')
-   *                weight distribution
+   * @param date          the date at which the user wishes to rebalance the portfolio
+   * @param weights       list of new corresponding (indices align with indices of 'stocks')
+   *                      weight distribution
+   * @param closingPrices the closing price of each stock on the date, in the order of
+   *                      'stocks'
    * @return a list of rebalanced shares corresponding to each stock
    * represented as List<Double> because shares can be fractional after rebalancing
    */
-  protected List<Double> rebalancePortfolio(String date, List<Integer> weights) {
+  protected List<Double> rebalancePortfolio(String date, List<Integer> weights,
+                                            List<Double> closingPrices) {
     int totalWeight = 0;      //total weight of the inputted weights
     double totalPrice = 0;    //total price of the stocks at the given date
     List<Double> prices = new ArrayList<>();
     List<Double> weightedPrices = new ArrayList<>();
     List<Double> newShares = new ArrayList<>();
 
-    StockModel stock = StockModel.getInstance();
-    List<Double> closingPrices = stock.getClosingPrices(name, date);
-
     for (int weight : weights) {
       totalWeight += weight;
     }
@@ -284,12 +286,14 @@ public class BetterPortfolio {
         double sharesSold;
         sharesSold = (prices.get(i) - weightedPrices.get(i))
                 / closingPrices.get(i);
-        stocks.get(i).setShares(this.getValidShares(stocks.get(i).getTicker(), date) - sharesSold);
+        setShares(stocks.get(i),
+                this.getValidShares(stocks.get(i).getTicker(), date) - sharesSold);
       } else if (prices.get(i) < weightedPrices.get(i)) {
         double sharesSold;
         sharesSold = (weightedPrices.get(i) - prices.get(i))
                 / closingPrices.get(i);
-        stocks.get(i).setShares(this.getValidShares(stocks.get(i).getTicker(), date) + sharesSold);
+        setShares(stocks.get(i),
+                this.getValidShares(stocks.get(i).getTicker(), date) + sharesSold);
       }
 
       newShares.add(this.getValidShares(stocks.get(i).getTicker(), date));
@@ -307,23 +311,28 @@ public class BetterPortfolio {
    * @return the number of shares on/before the given date
    */
   protected double getValidShares(String ticker, String date) {
-    double shares = 0;
-    for (Stock stock : stocks) {
-      if (stock.getTicker().equals(ticker)) {
-        //looked up documentation for this. compares the date of purchase and the given date
-        LocalDate datePurchase = LocalDate.parse(stock.getDate(), DateTimeFormatter.ISO_LOCAL_DATE);
-        LocalDate dateValue = LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE);
-
-        if (datePurchase.isBefore(dateValue) || datePurchase.isEqual(dateValue)) {
-          //since each stock is its own object if bought on different date, keep counter to
-          //calculate total number of shares
-          shares += stock.getShares();
-        }
-      }
+    LocalDate dateValue = LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE);
+    return ledger.sharesAsOf(ticker, (int) dateValue.toEpochDay());
+  }
 
-    }
+  /**
+   * Gets the index of this portfolio's lots by stock and purchase day.
+   *
+   * @return the holdings ledger
+   */
+  protected HoldingsLedger getLedger() {
+    return ledger;
+  }
 
-    return shares;
+  /**
+   * Helper method that changes the shares of a lot and keeps the ledger in step.
+   *
+   * @param stock  represents the lot
+   * @param shares represents its new number of shares
+   */
+  private void setShares(Stock stock, double shares) {
+    stock.setShares(shares);
+    ledger.update(stock);
   }
 
   /**
@@ -0,0 +1,79 @@
+package stock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A price source that tries several sources in priority order and returns the first
+ * history found. A source that doesn't have the ticker, or fails to read it, is skipped
+ * in favour of the next one, so putting local sources first means the network is only
+ * used when nothing local has the ticker.
+ */
+public class ChainedPriceSource implements PriceSource {
+  private final List<PriceSource> sources;
+
+  /**
+   * Constructs a chain of sources.
+   *
+   * @param sources represents the sources, highest priority first
+   * @throws IllegalArgumentException if no sources are given
+   */
+  public ChainedPriceSource(List<PriceSource> sources) {
+    if (sources.isEmpty()) {
+      throw new IllegalArgumentException("A chain needs at least one price source");
+    }
+    this.sources = new ArrayList<>(sources);
+  }
+
+  /**
+   * Gets the sources of this chain.
+   *
+   * @return the sources, highest priority first
+   */
+  public List<PriceSource> getSources() {
+    return new ArrayList<>(sources);
+  }
+
+  /**
+   * Loads the history of a ticker from the first source that has it.
+   *
+   * @param ticker represents the upper-case ticker symbol
+   * @return the price history, or null if no source has the ticker
+   * @throws IOException if no source had the ticker and at least one failed to read it
+   */
+  @Override
+  public PriceSeries load(String ticker) throws IOException {
+    IOException failure = null;
+    for (PriceSource source : sources) {
+      try {
+        PriceSeries series = source.load(ticker);
+        if (series != null && !series.isEmpty()) {
+          return series;
+        }
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = new IOException("Could not load " + ticker + " from " + source.getName(), e);
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return null;
+  }
+
+  @Override
+  public String getName() {
+    StringBuilder name = new StringBuilder();
+    for (PriceSource source : sources) {
+      if (name.length() > 0) {
+        name.append(", then ");
+      }
+      name.append(source.getName());
+    }
+    return name.toString();
+  }
+}
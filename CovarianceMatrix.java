@@ -0,0 +1,265 @@
+package stock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The covariance and correlation of the daily returns of several stocks over the same
+ * trading days. Histories are aligned on the days every one of them traded, and the returns
+ * of the most recent days of that intersection are centred and multiplied out. The product
+ * is a symmetric matrix of dot products, so only the upper triangle is computed, in square
+ * tiles of stocks whose return rows are walked in chunks small enough to stay in cache; the
+ * tiles are shared out over a fork-join pool.
+ */
+public final class CovarianceMatrix {
+  // tickers per tile side and returns per chunk: two tiles of chunks are about 64 KB
+  private static final int TILE = 32;
+  private static final int CHUNK = 128;
+
+  private final List<String> tickers;
+  private final double[][] covariance;
+  private final int days;
+  private final int lastDay;
+
+  private CovarianceMatrix(List<String> tickers, double[][] covariance, int days,
+                           int lastDay) {
+    this.tickers = tickers;
+    this.covariance = covariance;
+    this.days = days;
+    this.lastDay = lastDay;
+  }
+
+  /**
+   * Computes the matrix of several histories on the common pool.
+   *
+   * @see #compute(List, int, ForkJoinPool)
+   */
+  public static CovarianceMatrix compute(List<PriceSeries> histories, int window) {
+    return compute(histories, window, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Computes the matrix of several histories.
+   *
+   * @param histories represents the histories, one per stock
+   * @param window    represents the most daily returns to use, counting back from the last
+   *                  day all the stocks traded
+   * @param pool      represents the pool the tiles are computed on
+   * @return the covariance matrix, with stocks in the order given
+   * @throws IllegalArgumentException if there are no histories, or the stocks have fewer than
+   *                                  two returns on common days
+   */
+  public static CovarianceMatrix compute(List<PriceSeries> histories, int window,
+                                         ForkJoinPool pool) {
+    if (histories.isEmpty()) {
+      throw new IllegalArgumentException("At least one stock is needed.");
+    }
+    int[] common = commonDays(histories);
+    int length = Math.min(window, common.length - 1);
+    if (length < 2) {
+      throw new IllegalArgumentException("The stocks don't have enough trading days in "
+              + "common.");
+    }
+    int[] days = Arrays.copyOfRange(common, common.length - length - 1, common.length);
+
+    int n = histories.size();
+    double[][] returns = new double[n][];
+    List<String> tickers = new ArrayList<>(n);
+    for (int s = 0; s < n; s++) {
+      returns[s] = centredReturns(histories.get(s), days);
+      tickers.add(histories.get(s).getTicker());
+    }
+
+    double[][] covariance = new double[n][n];
+    int tiles = (n + TILE - 1) / TILE;
+    List<RecursiveAction> tasks = new ArrayList<>();
+    for (int ti = 0; ti < tiles; ti++) {
+      for (int tj = ti; tj < tiles; tj++) {
+        tasks.add(new Tile(returns, covariance, ti * TILE, tj * TILE));
+      }
+    }
+    pool.invoke(new RecursiveAction() {
+      @Override
+      protected void compute() {
+        invokeAll(tasks);
+      }
+    });
+
+    for (int i = 0; i < n; i++) {
+      for (int j = i; j < n; j++) {
+        covariance[i][j] /= length - 1;
+        covariance[j][i] = covariance[i][j];
+      }
+    }
+    return new CovarianceMatrix(Collections.unmodifiableList(tickers), covariance, length,
+            days[days.length - 1]);
+  }
+
+  /**
+   * Helper method that finds the days every history traded, by intersecting their sorted
+   * epoch days one history at a time.
+   */
+  private static int[] commonDays(List<PriceSeries> histories) {
+    PriceSeries first = histories.get(0);
+    int[] common = new int[first.size()];
+    for (int i = 0; i < common.length; i++) {
+      common[i] = first.getEpochDay(i);
+    }
+    int size = common.length;
+    for (int s = 1; s < histories.size() && size > 0; s++) {
+      PriceSeries other = histories.get(s);
+      int kept = 0;
+      int j = 0;
+      for (int i = 0; i < size && j < other.size(); ) {
+        int a = common[i];
+        int b = other.getEpochDay(j);
+        if (a == b) {
+          common[kept++] = a;
+          i++;
+          j++;
+        } else if (a < b) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+      size = kept;
+    }
+    return Arrays.copyOf(common, size);
+  }
+
+  /**
+   * Helper method that gets a history's returns between consecutive days of an aligned
+   * calendar, minus their mean.
+   */
+  private static double[] centredReturns(PriceSeries series, int[] days) {
+    double[] closes = new double[days.length];
+    int row = series.indexOf(days[0]);
+    for (int d = 0; d < days.length; d++) {
+      // the calendar only holds days this history traded, and both are ascending
+      while (series.getEpochDay(row) != days[d]) {
+        row++;
+      }
+      closes[d] = series.getClose(row);
+    }
+    double[] result = new double[days.length - 1];
+    Kernels.returns(closes, result, result.length);
+    double mean = Kernels.sum(result, 0, result.length) / result.length;
+    for (int k = 0; k < result.length; k++) {
+      result[k] -= mean;
+    }
+    return result;
+  }
+
+  /**
+   * The dot products between the return rows of two tiles of stocks, on or above the
+   * diagonal.
+   */
+  private static final class Tile extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final double[][] returns;
+    private final double[][] covariance;
+    private final int rowStart;
+    private final int columnStart;
+
+    private Tile(double[][] returns, double[][] covariance, int rowStart, int columnStart) {
+      this.returns = returns;
+      this.covariance = covariance;
+      this.rowStart = rowStart;
+      this.columnStart = columnStart;
+    }
+
+    @Override
+    protected void compute() {
+      int n = returns.length;
+      int length = returns[0].length;
+      int rowEnd = Math.min(rowStart + TILE, n);
+      int columnEnd = Math.min(columnStart + TILE, n);
+      for (int k = 0; k < length; k += CHUNK) {
+        int chunkEnd = Math.min(k + CHUNK, length);
+        for (int i = rowStart; i < rowEnd; i++) {
+          double[] x = returns[i];
+          double[] out = covariance[i];
+          for (int j = Math.max(columnStart, i); j < columnEnd; j++) {
+            out[j] += Kernels.dot(x, returns[j], k, chunkEnd);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the tickers of the stocks, in the order of the rows and columns.
+   *
+   * @return the ticker symbols
+   */
+  public List<String> getTickers() {
+    return tickers;
+  }
+
+  /**
+   * Gets the number of daily returns the matrix was computed over.
+   *
+   * @return the number of returns
+   */
+  public int getDays() {
+    return days;
+  }
+
+  /**
+   * Gets the last day the returns were taken on.
+   *
+   * @return the epoch day of the last return
+   */
+  public int getLastDay() {
+    return lastDay;
+  }
+
+  /**
+   * Gets the covariance of the daily returns of two stocks.
+   *
+   * @param i represents the row of the first stock
+   * @param j represents the row of the second stock
+   * @return the sample covariance
+   */
+  public double getCovariance(int i, int j) {
+    return covariance[i][j];
+  }
+
+  /**
+   * Gets the correlation of the daily returns of two stocks.
+   *
+   * @param i represents the row of the first stock
+   * @param j represents the row of the second stock
+   * @return the correlation between -1 and 1, or NaN if either stock's price never moved
+   */
+  public double getCorrelation(int i, int j) {
+    double scale = Math.sqrt(covariance[i][i] * covariance[j][j]);
+    return scale > 0 ? covariance[i][j] / scale : Double.NaN;
+  }
+
+  /**
+   * Gets the correlation of the daily returns of two stocks by ticker.
+   *
+   * @param first  represents the ticker of the first stock
+   * @param second represents the ticker of the second stock
+   * @return the correlation between -1 and 1
+   * @throws IllegalArgumentException if either ticker isn't in the matrix
+   */
+  public double getCorrelation(String first, String second) {
+    return getCorrelation(indexOf(first), indexOf(second));
+  }
+
+  private int indexOf(String ticker) {
+    int index = tickers.indexOf(ticker.toUpperCase());
+    if (index < 0) {
+      throw new IllegalArgumentException(ticker + " is not in the matrix.");
+    }
+    return index;
+  }
+}
@@ -0,0 +1,231 @@
+package stock;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Detects the days a fast simple moving average crosses a slow one: a golden cross when the
+ * fast average rises above the slow one and a death cross when it falls below. A fast
+ * period of one compares the close itself with the slow average. Closes are fed in one
+ * trading day at a time and the detector keeps only the last slow-period closes and two
+ * running sums, so each day costs the same no matter how long the history is, and new days
+ * from a refresh can be fed in without scanning the history again. Days where the averages
+ * only touch are not crosses; the fast average has to end up on the other side.
+ */
+public final class CrossDetector {
+
+  /**
+   * Which way the fast average crossed the slow one.
+   */
+  public enum Direction {
+    GOLDEN, DEATH
+  }
+
+  private final int fastPeriod;
+  private final int slowPeriod;
+  private final double[] window;
+  private double fastSum;
+  private double slowSum;
+  private long days;
+  private int side;
+
+  /**
+   * Constructs a detector.
+   *
+   * @param fastPeriod represents the number of days of the fast average; 1 uses the close
+   * @param slowPeriod represents the number of days of the slow average
+   * @throws IllegalArgumentException if a period isn't positive or the fast period isn't
+   *                                  shorter than the slow one
+   */
+  public CrossDetector(int fastPeriod, int slowPeriod) {
+    if (fastPeriod <= 0 || slowPeriod <= 0) {
+      throw new IllegalArgumentException("The number of days must be positive.");
+    }
+    if (fastPeriod >= slowPeriod) {
+      throw new IllegalArgumentException("The fast average must be shorter than the slow one.");
+    }
+    this.fastPeriod = fastPeriod;
+    this.slowPeriod = slowPeriod;
+    this.window = new double[slowPeriod];
+  }
+
+  /**
+   * Feeds the close of the next trading day.
+   *
+   * @param epochDay represents the day as the number of days since 1970-01-01
+   * @param close    represents the closing price of the day
+   * @return the cross on that day, or null if the averages didn't cross
+   */
+  public Event accept(int epochDay, double close) {
+    int slot = (int) (days % slowPeriod);
+    if (days >= slowPeriod) {
+      slowSum -= window[slot];
+    }
+    if (days >= fastPeriod) {
+      fastSum -= window[(int) ((days - fastPeriod) % slowPeriod)];
+    }
+    window[slot] = close;
+    slowSum += close;
+    fastSum += close;
+    days++;
+    if (days < slowPeriod) {
+      return null;
+    }
+
+    double fast = fastSum / fastPeriod;
+    double slow = slowSum / slowPeriod;
+    // running sums drift by a few ulps, so averages that close together are touching
+    double gap = fast - slow;
+    int now = gap > MovingAverages.TIE_TOLERANCE * Math.abs(slow) ? 1
+            : gap < -MovingAverages.TIE_TOLERANCE * Math.abs(slow) ? -1 : 0;
+    if (now == 0) {
+      return null;
+    }
+    int before = side;
+    side = now;
+    if (before == 0 || before == now) {
+      return null;
+    }
+    return new Event(epochDay, now > 0 ? Direction.GOLDEN : Direction.DEATH, fast, slow);
+  }
+
+  /**
+   * Gets the number of days fed to this detector so far.
+   *
+   * @return the number of days
+   */
+  public long getDays() {
+    return days;
+  }
+
+  /**
+   * Lazily scans a range of a history for crosses. The detector is first fed the days just
+   * before the range, so a cross on the first day of the range is found too.
+   *
+   * @param series     represents the price history
+   * @param from       represents the first row of the range
+   * @param to         represents the last row of the range
+   * @param fastPeriod represents the number of days of the fast average; 1 uses the close
+   * @param slowPeriod represents the number of days of the slow average
+   * @return the crosses in the range, in order, found as the iterator is advanced
+   * @throws IllegalArgumentException if the periods aren't valid
+   */
+  public static Iterator<Event> scan(PriceSeries series, int from, int to,
+                                     int fastPeriod, int slowPeriod) {
+    CrossDetector detector = new CrossDetector(fastPeriod, slowPeriod);
+    int start = Math.max(0, from);
+    int end = Math.min(to, series.size() - 1);
+    // enough earlier days for both averages on the day before the range
+    for (int i = Math.max(0, start - slowPeriod); i < start; i++) {
+      detector.accept(series.getEpochDay(i), series.getClose(i));
+    }
+
+    return new Iterator<Event>() {
+      private int row = start;
+      private Event next;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null && row <= end) {
+          next = detector.accept(series.getEpochDay(row), series.getClose(row));
+          row++;
+        }
+        return next != null;
+      }
+
+      @Override
+      public Event next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Event event = next;
+        next = null;
+        return event;
+      }
+    };
+  }
+
+  /**
+   * Lazily scans a range of a history for crosses, as a stream.
+   *
+   * @see #scan(PriceSeries, int, int, int, int)
+   */
+  public static Stream<Event> stream(PriceSeries series, int from, int to,
+                                     int fastPeriod, int slowPeriod) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            scan(series, from, to, fastPeriod, slowPeriod),
+            Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * A day on which the fast average crossed the slow one.
+   */
+  public static final class Event {
+    private final int epochDay;
+    private final Direction direction;
+    private final double fast;
+    private final double slow;
+
+    private Event(int epochDay, Direction direction, double fast, double slow) {
+      this.epochDay = epochDay;
+      this.direction = direction;
+      this.fast = fast;
+      this.slow = slow;
+    }
+
+    /**
+     * Gets the day of the cross as the number of days since 1970-01-01.
+     *
+     * @return the epoch day
+     */
+    public int getEpochDay() {
+      return epochDay;
+    }
+
+    /**
+     * Gets the day of the cross formatted as yyyy-MM-dd.
+     *
+     * @return the date
+     */
+    public String getDate() {
+      return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    /**
+     * Gets which way the averages crossed.
+     *
+     * @return golden or death
+     */
+    public Direction getDirection() {
+      return direction;
+    }
+
+    /**
+     * Gets the fast average on the day of the cross.
+     *
+     * @return the fast average
+     */
+    public double getFast() {
+      return fast;
+    }
+
+    /**
+     * Gets the slow average on the day of the cross.
+     *
+     * @return the slow average
+     */
+    public double getSlow() {
+      return slow;
+    }
+
+    @Override
+    public String toString() {
+      return getDate() + " " + (direction == Direction.GOLDEN ? "golden" : "death") + " cross";
+    }
+  }
+}
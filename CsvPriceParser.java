@@ -0,0 +1,286 @@
+package stock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Parses csv price histories straight from bytes into the primitive columns of a
+ * {@link PriceSeries}. Files are memory-mapped rather than read through a reader, and the
+ * dates and prices of each row are decoded in place, so apart from growing the columns no
+ * objects are allocated per row. Both the bundled csv layout
+ * (Date,Open,High,Low,Close,Adj Close,Volume) and the Alpha Vantage layout
+ * (timestamp,open,high,low,close,volume) are understood.
+ */
+public final class CsvPriceParser {
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+  };
+  private static final int MAX_FIELDS = 16;
+  private static final int INVALID_DAY = Integer.MIN_VALUE;
+  private static final int DATE = 0;
+  private static final int OPEN = 1;
+  private static final int HIGH = 2;
+  private static final int LOW = 3;
+  private static final int CLOSE = 4;
+
+  private CsvPriceParser() {
+  }
+
+  /**
+   * Memory-maps a csv file and parses it.
+   *
+   * @param ticker represents the ticker symbol of the stock
+   * @param file   represents the csv file
+   * @return the parsed price series
+   * @throws IOException if the file can't be opened or mapped
+   */
+  public static PriceSeries parse(String ticker, Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return parse(ticker, buffer);
+    }
+  }
+
+  /**
+   * Parses a csv held in a buffer, from its position to its limit. The buffer's position
+   * is not changed.
+   *
+   * @param ticker represents the ticker symbol of the stock
+   * @param buffer represents the csv bytes
+   * @return the parsed price series
+   */
+  public static PriceSeries parse(String ticker, ByteBuffer buffer) {
+    int pos = buffer.position();
+    int limit = buffer.limit();
+    int[] starts = new int[MAX_FIELDS];
+    int[] ends = new int[MAX_FIELDS];
+
+    // the header is the only line turned into strings, to find the volume column
+    int lineEnd = endOfLine(buffer, pos, limit);
+    int fields = splitFields(buffer, pos, lineEnd, starts, ends);
+    int volumeColumn = 5;
+    for (int i = 0; i < fields; i++) {
+      if (decode(buffer, starts[i], ends[i]).trim().equalsIgnoreCase("volume")) {
+        volumeColumn = i;
+      }
+    }
+    int needed = Math.max(CLOSE, volumeColumn) + 1;
+    pos = nextLine(buffer, lineEnd, limit);
+
+    // rows take 50 to 70 bytes, so sizing for 48 means the columns rarely need to grow
+    int capacity = Math.max(16, (limit - pos) / 48);
+    int size = 0;
+    int[] days = new int[capacity];
+    double[] open = new double[capacity];
+    double[] high = new double[capacity];
+    double[] low = new double[capacity];
+    double[] close = new double[capacity];
+    double[] volume = new double[capacity];
+
+    while (pos < limit) {
+      lineEnd = endOfLine(buffer, pos, limit);
+      fields = splitFields(buffer, pos, lineEnd, starts, ends);
+      int day = fields >= needed
+              ? parseEpochDay(buffer, starts[DATE], ends[DATE]) : INVALID_DAY;
+      double closePrice = day != INVALID_DAY
+              ? parseDecimal(buffer, starts[CLOSE], ends[CLOSE]) : Double.NaN;
+
+      // skip rows we can't use, e.g. an error message instead of prices
+      if (!Double.isNaN(closePrice)) {
+        if (size == days.length) {
+          capacity = size * 2;
+          days = Arrays.copyOf(days, capacity);
+          open = Arrays.copyOf(open, capacity);
+          high = Arrays.copyOf(high, capacity);
+          low = Arrays.copyOf(low, capacity);
+          close = Arrays.copyOf(close, capacity);
+          volume = Arrays.copyOf(volume, capacity);
+        }
+        days[size] = day;
+        open[size] = parseDecimal(buffer, starts[OPEN], ends[OPEN]);
+        high[size] = parseDecimal(buffer, starts[HIGH], ends[HIGH]);
+        low[size] = parseDecimal(buffer, starts[LOW], ends[LOW]);
+        close[size] = closePrice;
+        volume[size] = parseDecimal(buffer, starts[volumeColumn], ends[volumeColumn]);
+        size++;
+      }
+      pos = nextLine(buffer, lineEnd, limit);
+    }
+
+    return PriceSeries.fromColumns(ticker, size, days, open, high, low, close, volume);
+  }
+
+  /**
+   * Helper method that finds the end of the line starting at pos, not counting a
+   * trailing carriage return.
+   */
+  private static int endOfLine(ByteBuffer buffer, int pos, int limit) {
+    int i = pos;
+    while (i < limit && buffer.get(i) != '\n') {
+      i++;
+    }
+    if (i > pos && buffer.get(i - 1) == '\r') {
+      i--;
+    }
+    return i;
+  }
+
+  /**
+   * Helper method that finds the start of the line after the one ending at lineEnd.
+   */
+  private static int nextLine(ByteBuffer buffer, int lineEnd, int limit) {
+    int i = lineEnd;
+    while (i < limit && buffer.get(i) != '\n') {
+      i++;
+    }
+    return i + 1;
+  }
+
+  /**
+   * Helper method that records where each comma-separated field of a line starts and
+   * ends. Fields beyond the first sixteen are ignored.
+   *
+   * @return the number of fields recorded
+   */
+  private static int splitFields(ByteBuffer buffer, int start, int end,
+                                 int[] starts, int[] ends) {
+    int count = 0;
+    int fieldStart = start;
+    for (int i = start; i <= end && count < MAX_FIELDS; i++) {
+      if (i == end || buffer.get(i) == ',') {
+        starts[count] = fieldStart;
+        ends[count] = i;
+        count++;
+        fieldStart = i + 1;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Helper method that decodes a yyyy-MM-dd date into the number of days since
+   * 1970-01-01, without creating a LocalDate.
+   *
+   * @return the epoch day, or Integer.MIN_VALUE if the field isn't a valid date
+   */
+  static int parseEpochDay(ByteBuffer buffer, int start, int end) {
+    if (end - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+      return INVALID_DAY;
+    }
+    int year = digits(buffer, start, 4);
+    int month = digits(buffer, start + 5, 2);
+    int day = digits(buffer, start + 8, 2);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+      return INVALID_DAY;
+    }
+    return epochDay(year, month, day);
+  }
+
+  /**
+   * Helper method that converts a calendar date to days since 1970-01-01 using the
+   * proleptic Gregorian calendar, the same calendar as LocalDate.
+   */
+  static int epochDay(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = (y >= 0 ? y : y - 399) / 400;
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return leap ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  private static int digits(ByteBuffer buffer, int start, int count) {
+    int value = 0;
+    for (int i = start; i < start + count; i++) {
+      int digit = buffer.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Helper method that decodes a plain decimal number such as 7.374124 or 407940. Numbers
+   * with at most fifteen significant digits are decoded exactly as Double.parseDouble would
+   * decode them; anything longer or in another notation is handed to Double.parseDouble.
+   *
+   * @return the number, or NaN if the field isn't a number
+   */
+  static double parseDecimal(ByteBuffer buffer, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+      negative = buffer.get(i) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int significant = 0;
+    int fraction = -1;
+    boolean anyDigit = false;
+    for (; i < end; i++) {
+      byte b = buffer.get(i);
+      if (b >= '0' && b <= '9') {
+        anyDigit = true;
+        if (mantissa != 0 || b != '0') {
+          significant++;
+        }
+        mantissa = mantissa * 10 + (b - '0');
+        if (fraction >= 0) {
+          fraction++;
+        }
+        if (significant > 15 || fraction >= POWERS_OF_TEN.length) {
+          return parseSlow(buffer, start, end);
+        }
+      } else if (b == '.' && fraction < 0) {
+        fraction = 0;
+      } else {
+        return parseSlow(buffer, start, end);
+      }
+    }
+    if (!anyDigit) {
+      return Double.NaN;
+    }
+    // both operands are exact, so the division is correctly rounded
+    double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+    return negative ? -value : value;
+  }
+
+  private static double parseSlow(ByteBuffer buffer, int start, int end) {
+    try {
+      return Double.parseDouble(decode(buffer, start, end).trim());
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  private static String decode(ByteBuffer buffer, int start, int end) {
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+}
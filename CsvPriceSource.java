@@ -0,0 +1,52 @@
+package stock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A price source that parses csv files named after their ticker (IBM.csv) in a directory.
+ * After a file is parsed a binary snapshot of it is written next to it, so a
+ * {@link SnapshotPriceSource} over the same directory can load it faster next time.
+ */
+public class CsvPriceSource implements PriceSource {
+  private final Path directory;
+
+  /**
+   * Constructs a source over the csv files in a directory.
+   *
+   * @param directory represents the directory holding the csv files
+   */
+  public CsvPriceSource(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Gets the path of the csv file for a ticker.
+   *
+   * @param ticker represents the ticker symbol
+   * @return the path of its csv file
+   */
+  public Path csvPath(String ticker) {
+    return directory.resolve(ticker + ".csv");
+  }
+
+  @Override
+  public PriceSeries load(String ticker) throws IOException {
+    Path csv = csvPath(ticker);
+    if (!Files.isRegularFile(csv)) {
+      return null;
+    }
+    PriceSeries series = CsvPriceParser.parse(ticker, csv);
+    if (series.isEmpty()) {
+      return null;
+    }
+    PriceSnapshot.write(series, csv);
+    return series;
+  }
+
+  @Override
+  public String getName() {
+    return "csv files in " + directory;
+  }
+}
@@ -68,7 +68,14 @@ public class GuiController implements Controller, Features {
   private boolean checkValid(String symbol, String shares,
                              String date, boolean portfolio) {
     boolean isValid = true;
-    if (model.checkValidTicker(symbol)) {
+    boolean invalidTicker;
+    try {
+      invalidTicker = model.checkValidTicker(symbol);
+    } catch (IllegalArgumentException e) {
+      // the symbol couldn't be looked up, so it can't be accepted
+      invalidTicker = true;
+    }
+    if (invalidTicker) {
       if (portfolio) {
         guiView.showInvalidSymbol();
         isValid = false;
@@ -0,0 +1,309 @@
+package stock;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index over the lots of a portfolio that answers how many shares of a stock were held on
+ * a day without looking at every lot. Each stock's lots are kept sorted by purchase day next
+ * to a Fenwick tree of their shares, a prefix-sum array that can also be changed in place, so
+ * the shares held on a day are a binary search for the last lot bought by then plus a prefix
+ * sum. Buying a lot on or after a stock's latest one and changing a lot's shares both take
+ * O(log n); a lot dated before a stock's latest one is inserted in order and the stock's sums
+ * are rebuilt.
+ *
+ * <p>For the holdings of every stock at once, the ledger also keeps a checkpoint at the end of
+ * each month since the first lot: the shares of each stock held then, as a primitive array.
+ * The holdings on a day start from the checkpoint of the month before and only add the lots
+ * bought since, so they cost the number of stocks plus at most a month of lots, however long
+ * the portfolio's history. Checkpoints are built the first time they are needed. A lot bought
+ * or changed in some month makes the checkpoints from that month on stale, and they are
+ * rebuilt from the last good one when next needed, so the usual purchase dated today only
+ * costs the current month.
+ */
+final class HoldingsLedger {
+  private final Map<String, Lots> lots = new LinkedHashMap<>();
+  private final List<String> columns = new ArrayList<>();
+  // every lot in day order, with the column of its stock
+  private int[] eventDays = new int[8];
+  private int[] eventColumns = new int[8];
+  private Stock[] eventStocks = new Stock[8];
+  private int events;
+  // checkpoint k holds the shares at the end of month firstMonth + k, and checkpointEnds[k]
+  // is the number of lots bought by then
+  private int firstMonth;
+  private double[][] checkpoints = new double[0][];
+  private int[] checkpointEnds = new int[0];
+  private int validCheckpoints;
+
+  /**
+   * Constructs a ledger over a portfolio's existing lots.
+   *
+   * @param stocks represents the lots, in any order
+   */
+  HoldingsLedger(List<Stock> stocks) {
+    for (Stock stock : stocks) {
+      add(stock);
+    }
+  }
+
+  /**
+   * Records a new lot.
+   *
+   * @param stock represents the lot
+   */
+  synchronized void add(Stock stock) {
+    int day = (int) LocalDate.parse(stock.getDate()).toEpochDay();
+    Lots held = lots.computeIfAbsent(stock.getTicker(), ticker -> {
+      columns.add(ticker);
+      return new Lots(columns.size() - 1);
+    });
+    held.add(stock, day);
+
+    int month = Resampler.monthIndex(day);
+    if (events == 0 || month < firstMonth) {
+      firstMonth = month;
+      validCheckpoints = 0;
+    } else {
+      validCheckpoints = Math.min(validCheckpoints, month - firstMonth);
+    }
+    addEvent(stock, day, held.column);
+  }
+
+  /**
+   * Helper method that inserts a lot into the day-ordered list of every lot, after any
+   * bought on the same day.
+   */
+  private void addEvent(Stock stock, int day, int column) {
+    if (events == eventDays.length) {
+      eventDays = Arrays.copyOf(eventDays, events * 2);
+      eventColumns = Arrays.copyOf(eventColumns, events * 2);
+      eventStocks = Arrays.copyOf(eventStocks, events * 2);
+    }
+    int i = events++;
+    for (; i > 0 && eventDays[i - 1] > day; i--) {
+      eventDays[i] = eventDays[i - 1];
+      eventColumns[i] = eventColumns[i - 1];
+      eventStocks[i] = eventStocks[i - 1];
+    }
+    eventDays[i] = day;
+    eventColumns[i] = column;
+    eventStocks[i] = stock;
+  }
+
+  /**
+   * Records that a lot's shares have been changed with {@link Stock#setShares}.
+   *
+   * @param stock represents the lot
+   * @throws IllegalArgumentException if the lot was never added
+   */
+  synchronized void update(Stock stock) {
+    Lots held = lots.get(stock.getTicker());
+    if (held == null) {
+      throw new IllegalArgumentException("This stock isn't in the portfolio");
+    }
+    int day = held.update(stock);
+    validCheckpoints = Math.min(validCheckpoints, Resampler.monthIndex(day) - firstMonth);
+  }
+
+  /**
+   * Gets the number of shares of a stock held on a day, counting every lot bought on or
+   * before it.
+   *
+   * @param ticker   represents the ticker symbol of the stock
+   * @param epochDay represents the day, as days since 1970-01-01
+   * @return the number of shares, 0 if none were bought by then
+   */
+  synchronized double sharesAsOf(String ticker, int epochDay) {
+    Lots held = lots.get(ticker);
+    return held == null ? 0 : held.sharesThrough(held.countThrough(epochDay));
+  }
+
+  /**
+   * Gets the number of shares of every stock held on a day.
+   *
+   * @param epochDay represents the day, as days since 1970-01-01
+   * @return the shares of each stock, in the order of {@link #getTickers}
+   */
+  synchronized double[] holdingsAsOf(int epochDay) {
+    int month = Resampler.monthIndex(epochDay);
+    if (events == 0 || month <= firstMonth) {
+      return sumEvents(new double[columns.size()], 0, epochDay);
+    }
+    // the last checkpoint before the day's month, or the last one there is
+    int lastMonth = Resampler.monthIndex(eventDays[events - 1]);
+    int k = Math.min(month, lastMonth + 1) - 1 - firstMonth;
+    buildCheckpoints(k + 1);
+    double[] holdings = Arrays.copyOf(checkpoints[k], columns.size());
+    return sumEvents(holdings, checkpointEnds[k], epochDay);
+  }
+
+  /**
+   * Helper method that adds the shares of the lots from a position in the list of every lot
+   * up to a day.
+   */
+  private double[] sumEvents(double[] holdings, int from, int epochDay) {
+    for (int i = from; i < events && eventDays[i] <= epochDay; i++) {
+      holdings[eventColumns[i]] += eventStocks[i].getShares();
+    }
+    return holdings;
+  }
+
+  /**
+   * Helper method that makes sure the first count checkpoints are up to date, building any
+   * stale ones from the last good one.
+   */
+  private void buildCheckpoints(int count) {
+    if (checkpoints.length < count) {
+      int capacity = Math.max(count, checkpoints.length * 2);
+      checkpoints = Arrays.copyOf(checkpoints, capacity);
+      checkpointEnds = Arrays.copyOf(checkpointEnds, capacity);
+    }
+    for (int k = validCheckpoints; k < count; k++) {
+      double[] holdings = k == 0 ? new double[columns.size()]
+              : Arrays.copyOf(checkpoints[k - 1], columns.size());
+      int i = k == 0 ? 0 : checkpointEnds[k - 1];
+      int nextMonth = firstMonth + k + 1;
+      int end = CsvPriceParser.epochDay(Math.floorDiv(nextMonth, 12),
+              Math.floorMod(nextMonth, 12) + 1, 1) - 1;
+      for (; i < events && eventDays[i] <= end; i++) {
+        holdings[eventColumns[i]] += eventStocks[i].getShares();
+      }
+      checkpoints[k] = holdings;
+      checkpointEnds[k] = i;
+    }
+    validCheckpoints = Math.max(validCheckpoints, count);
+  }
+
+  /**
+   * Gets the tickers of the stocks with lots, in the order they were first bought.
+   *
+   * @return the ticker symbols
+   */
+  List<String> getTickers() {
+    return Collections.unmodifiableList(columns);
+  }
+
+  /**
+   * The lots of one stock, sorted by purchase day. The Fenwick tree is 1-based: entry i
+   * holds the shares of the lowbit(i) lots ending at lot i.
+   */
+  private static final class Lots {
+    private final int column;
+    private Stock[] stocks = new Stock[4];
+    private int[] days = new int[4];
+    private double[] shares = new double[4];
+    private double[] tree = new double[5];
+    private int size;
+    private final Map<Stock, Integer> positions = new IdentityHashMap<>();
+
+    private Lots(int column) {
+      this.column = column;
+    }
+
+    private void add(Stock stock, int day) {
+      if (size == days.length) {
+        stocks = Arrays.copyOf(stocks, size * 2);
+        days = Arrays.copyOf(days, size * 2);
+        shares = Arrays.copyOf(shares, size * 2);
+        tree = Arrays.copyOf(tree, size * 2 + 1);
+      }
+      if (size == 0 || days[size - 1] <= day) {
+        int i = size++;
+        stocks[i] = stock;
+        days[i] = day;
+        shares[i] = stock.getShares();
+        positions.put(stock, i);
+        // a new last entry covers its own lot and the lots lowbit before it
+        int node = i + 1;
+        tree[node] = shares[i] + sharesThrough(i) - sharesThrough(node - (node & -node));
+        return;
+      }
+
+      int at = countThrough(day);
+      System.arraycopy(stocks, at, stocks, at + 1, size - at);
+      System.arraycopy(days, at, days, at + 1, size - at);
+      System.arraycopy(shares, at, shares, at + 1, size - at);
+      stocks[at] = stock;
+      days[at] = day;
+      shares[at] = stock.getShares();
+      size++;
+      rebuild();
+    }
+
+    /**
+     * Takes up a change to a lot's shares.
+     *
+     * @return the day the lot was bought on
+     */
+    private int update(Stock stock) {
+      Integer i = positions.get(stock);
+      if (i == null) {
+        throw new IllegalArgumentException("This stock isn't in the portfolio");
+      }
+      double delta = stock.getShares() - shares[i];
+      shares[i] = stock.getShares();
+      for (int node = i + 1; node <= size; node += node & -node) {
+        tree[node] += delta;
+      }
+      return days[i];
+    }
+
+    /**
+     * Helper method that recomputes the tree and positions after lots have moved.
+     */
+    private void rebuild() {
+      positions.clear();
+      Arrays.fill(tree, 0);
+      for (int i = 0; i < size; i++) {
+        positions.put(stocks[i], i);
+        int node = i + 1;
+        tree[node] += shares[i];
+        int parent = node + (node & -node);
+        if (parent <= size) {
+          tree[parent] += tree[node];
+        }
+      }
+    }
+
+    /**
+     * Counts the lots bought on or before a day.
+     *
+     * @param epochDay represents the day
+     * @return the number of lots
+     */
+    private int countThrough(int epochDay) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (days[middle] <= epochDay) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Adds up the shares of the first lots.
+     *
+     * @param count represents the number of lots, in day order
+     * @return their total shares
+     */
+    private double sharesThrough(int count) {
+      double total = 0;
+      for (int node = count; node > 0; node -= node & -node) {
+        total += tree[node];
+      }
+      return total;
+    }
+  }
+}
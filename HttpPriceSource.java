@@ -0,0 +1,172 @@
+package stock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * A price source that downloads daily histories from the Alpha Vantage web api, or from
+ * any server that answers the same queries, such as {@link StubPriceServer}. A ticker the
+ * api answers with an error message for is reported as not found; any other reply that
+ * isn't a price csv, such as the note the api sends instead of prices once the request
+ * limit has been reached, is a failure to download, since it says nothing about whether
+ * the ticker exists. Requests can be passed through a
+ * {@link RateLimiter} so they stay within the api's quota; one source is safe to use from
+ * several threads at once.
+ */
+public class HttpPriceSource implements PriceSource {
+  /**
+   * The address of the Alpha Vantage query api.
+   */
+  public static final String ALPHA_VANTAGE_URL = "https://www.alphavantage.co/query";
+
+  /**
+   * The api key the program has always used.
+   */
+  public static final String DEFAULT_API_KEY = "ASDIVE6SCAN0YYZO";
+
+  /**
+   * The number of requests per minute the free Alpha Vantage api allows.
+   */
+  public static final int ALPHA_VANTAGE_REQUESTS_PER_MINUTE = 5;
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+  // the quota belongs to the api key, so every default source shares one limiter
+  private static final RateLimiter ALPHA_VANTAGE_LIMIT =
+          new RateLimiter(ALPHA_VANTAGE_REQUESTS_PER_MINUTE, Duration.ofMinutes(1));
+
+  private final String baseUrl;
+  private final String apiKey;
+  private final RateLimiter rateLimiter;
+  private final HttpClient client;
+
+  /**
+   * Constructs a source that downloads from Alpha Vantage with the default api key,
+   * within the free api's per-minute quota.
+   */
+  public HttpPriceSource() {
+    this(ALPHA_VANTAGE_URL, DEFAULT_API_KEY, ALPHA_VANTAGE_LIMIT);
+  }
+
+  /**
+   * Constructs a source that downloads from the given query address without any limit
+   * on how often.
+   *
+   * @param baseUrl represents the address of the query api, without a query string
+   * @param apiKey  represents the api key sent with each request
+   */
+  public HttpPriceSource(String baseUrl, String apiKey) {
+    this(baseUrl, apiKey, null);
+  }
+
+  /**
+   * Constructs a source that downloads from the given query address.
+   *
+   * @param baseUrl     represents the address of the query api, without a query string
+   * @param apiKey      represents the api key sent with each request
+   * @param rateLimiter represents the limit on how often requests are sent, or null for
+   *                    no limit
+   */
+  public HttpPriceSource(String baseUrl, String apiKey, RateLimiter rateLimiter) {
+    this.baseUrl = baseUrl;
+    this.apiKey = apiKey;
+    this.rateLimiter = rateLimiter;
+    this.client = HttpClient.newBuilder()
+            .connectTimeout(TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+  }
+
+  /**
+   * Builds the query url for the daily history of a ticker.
+   *
+   * @param ticker represents the ticker symbol
+   * @param full   represents whether to ask for the full history or only the
+   *               most recent 100 days
+   * @return the query url
+   */
+  protected String queryUrl(String ticker, boolean full) {
+    return baseUrl + "?function=TIME_SERIES_DAILY"
+            + "&outputsize=" + (full ? "full" : "compact")
+            + "&symbol=" + URLEncoder.encode(ticker, StandardCharsets.UTF_8)
+            + "&apikey=" + apiKey
+            + "&datatype=csv";
+  }
+
+  @Override
+  public PriceSeries load(String ticker) throws IOException {
+    return download(ticker, true);
+  }
+
+  /**
+   * Loads only the most recent 100 trading days of a ticker, which is a small fraction
+   * of a full history and enough to bring a recently loaded history up to date.
+   *
+   * @param ticker represents the upper-case ticker symbol
+   * @return the recent price history, or null if the api doesn't have the ticker
+   * @throws IOException if the history couldn't be downloaded, including when the api
+   *                     answered with something other than prices or an error message
+   */
+  public PriceSeries loadRecent(String ticker) throws IOException {
+    return download(ticker, false);
+  }
+
+  private PriceSeries download(String ticker, boolean full) throws IOException {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(queryUrl(ticker, full)))
+            .timeout(TIMEOUT)
+            .GET()
+            .build();
+    HttpResponse<byte[]> response;
+    try {
+      if (rateLimiter != null) {
+        rateLimiter.acquire();
+      }
+      response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while downloading " + ticker);
+    }
+    if (response.statusCode() != 200) {
+      throw new IOException("Request for " + ticker + " failed with status "
+              + response.statusCode());
+    }
+    byte[] body = response.body();
+    if (!isCsv(body)) {
+      String text = new String(body, StandardCharsets.UTF_8);
+      if (text.contains("\"Error Message\"")) {
+        return null;
+      }
+      // a throttling note or anything else that isn't prices
+      throw new IOException("Request for " + ticker + " returned no prices: "
+              + text.substring(0, Math.min(text.length(), 200)).trim());
+    }
+    PriceSeries series = CsvPriceParser.parse(ticker, ByteBuffer.wrap(body));
+    return series.isEmpty() ? null : series;
+  }
+
+  /**
+   * Helper method that checks whether a reply is a csv rather than a json message, by its
+   * first character that isn't whitespace.
+   */
+  private static boolean isCsv(byte[] body) {
+    for (byte b : body) {
+      if (!Character.isWhitespace(b)) {
+        return b != '{' && b != '[';
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String getName() {
+    return baseUrl;
+  }
+}
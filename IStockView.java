@@ -100,6 +100,30 @@ public interface IStockView extends View {
    */
   void getXValue(Appendable a);
 
+  /**
+   * Method that displays to the user to prompt
+   * retrieving the names of several portfolios.
+   *
+   * @param a represents the characters added on
+   */
+  void getNames(Appendable a);
+
+  /**
+   * Method that displays to the user to prompt
+   * retrieving several dates.
+   *
+   * @param a represents the characters added on
+   */
+  void getDates(Appendable a);
+
+  /**
+   * Method that displays to the user to prompt
+   * getting the length of period to group days by.
+   *
+   * @param a represents the characters added on
+   */
+  void getPeriod(Appendable a);
+
   /**
    * Method that displays to the user to determine
    * what statistic they want to calculate.
@@ -0,0 +1,48 @@
+package stock;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A price source backed by series held in memory. Useful for tests and for serving
+ * histories that were produced elsewhere, for example by {@link StubPriceServer}.
+ */
+public class InMemoryPriceSource implements PriceSource {
+  private final Map<String, PriceSeries> series;
+
+  /**
+   * Constructs an empty in-memory source.
+   */
+  public InMemoryPriceSource() {
+    this.series = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Adds a price history to this source, replacing any history for the same ticker.
+   *
+   * @param history represents the price history to add
+   */
+  public void put(PriceSeries history) {
+    series.put(history.getTicker(), history);
+  }
+
+  /**
+   * Gets the tickers this source holds.
+   *
+   * @return the ticker symbols
+   */
+  public Set<String> getTickers() {
+    return series.keySet();
+  }
+
+  @Override
+  public PriceSeries load(String ticker) {
+    return series.get(ticker);
+  }
+
+  @Override
+  public String getName() {
+    return "memory";
+  }
+}
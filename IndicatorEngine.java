@@ -0,0 +1,326 @@
+package stock;
+
+import java.util.Arrays;
+
+/**
+ * Computes the common technical indicators of a price history in a single pass over its
+ * rows: an exponential moving average, the relative strength index, MACD, Bollinger bands
+ * and the average true range. Every indicator only needs a few numbers of running state, so
+ * each row costs the same however long the history is, and when a refresh adds rows to the
+ * history only the new rows are computed. Results are kept in one column per indicator that
+ * is reused and grown as rows arrive; rows before an indicator has enough data are NaN.
+ */
+public final class IndicatorEngine {
+  /**
+   * The number of days the relative strength index is smoothed over.
+   */
+  public static final int RSI_PERIOD = 14;
+  /**
+   * The number of days the average true range is smoothed over.
+   */
+  public static final int ATR_PERIOD = 14;
+  /**
+   * The number of days of the fast MACD average.
+   */
+  public static final int MACD_FAST = 12;
+  /**
+   * The number of days of the slow MACD average.
+   */
+  public static final int MACD_SLOW = 26;
+  /**
+   * The number of days of the MACD signal line.
+   */
+  public static final int MACD_SIGNAL = 9;
+  /**
+   * The number of days of the Bollinger band window.
+   */
+  public static final int BOLLINGER_PERIOD = 20;
+  /**
+   * How many standard deviations the Bollinger bands are from their middle.
+   */
+  public static final double BOLLINGER_WIDTH = 2.0;
+
+  /**
+   * The indicators the engine computes, one column each.
+   */
+  public enum Indicator {
+    EMA, RSI, MACD, MACD_SIGNAL, MACD_HISTOGRAM,
+    BOLLINGER_MIDDLE, BOLLINGER_UPPER, BOLLINGER_LOWER, ATR
+  }
+
+  private final int emaPeriod;
+  private final double[][] columns;
+  private PriceSeries series;
+  private int computed;
+
+  // running state, valid for rows [0, computed)
+  private Smoother ema;
+  private Smoother macdFast;
+  private Smoother macdSlow;
+  private Smoother macdSignal;
+  private Smoother averageGain;
+  private Smoother averageLoss;
+  private Smoother averageRange;
+  private double bollingerMean;
+  private double bollingerSquares;
+
+  /**
+   * Constructs an engine and computes the indicators of a history.
+   *
+   * @param series    represents the price history
+   * @param emaPeriod represents the number of days of the exponential moving average
+   * @throws IllegalArgumentException if emaPeriod isn't positive
+   */
+  public IndicatorEngine(PriceSeries series, int emaPeriod) {
+    if (emaPeriod <= 0) {
+      throw new IllegalArgumentException("The number of days must be positive.");
+    }
+    this.emaPeriod = emaPeriod;
+    this.columns = new double[Indicator.values().length][0];
+    this.series = PriceSeries.empty(series.getTicker());
+    reset();
+    update(series);
+  }
+
+  /**
+   * Brings the indicators up to date with a newer version of the history, such as the
+   * result of a refresh. If the newer history only adds rows after the ones already
+   * computed, only those rows are computed; if it changed any earlier row, everything is
+   * computed again.
+   *
+   * @param newer represents the newer history of the same stock
+   */
+  public void update(PriceSeries newer) {
+    if (newer == series) {
+      return;
+    }
+    if (!newer.startsWith(series, 0)) {
+      reset();
+    }
+    series = newer;
+    ensureCapacity(newer.size());
+    for (int i = computed; i < newer.size(); i++) {
+      step(i);
+    }
+    computed = newer.size();
+  }
+
+  /**
+   * Helper method that forgets every computed row and the running state.
+   */
+  private void reset() {
+    computed = 0;
+    ema = new Smoother(emaPeriod, 2.0 / (emaPeriod + 1));
+    macdFast = new Smoother(MACD_FAST, 2.0 / (MACD_FAST + 1));
+    macdSlow = new Smoother(MACD_SLOW, 2.0 / (MACD_SLOW + 1));
+    macdSignal = new Smoother(MACD_SIGNAL, 2.0 / (MACD_SIGNAL + 1));
+    // Wilder's smoothing, which RSI and ATR are defined with
+    averageGain = new Smoother(RSI_PERIOD, 1.0 / RSI_PERIOD);
+    averageLoss = new Smoother(RSI_PERIOD, 1.0 / RSI_PERIOD);
+    averageRange = new Smoother(ATR_PERIOD, 1.0 / ATR_PERIOD);
+    bollingerMean = 0;
+    bollingerSquares = 0;
+  }
+
+  private void ensureCapacity(int size) {
+    if (columns[0].length < size) {
+      int capacity = Math.max(size, columns[0].length * 3 / 2);
+      for (int c = 0; c < columns.length; c++) {
+        columns[c] = Arrays.copyOf(columns[c], capacity);
+      }
+    }
+  }
+
+  /**
+   * Helper method that computes every indicator of one row from the running state.
+   */
+  private void step(int i) {
+    double close = series.getClose(i);
+    double high = series.getHigh(i);
+    double low = series.getLow(i);
+
+    set(Indicator.EMA, i, ema.next(close));
+
+    double macd = macdFast.next(close) - macdSlow.next(close);
+    double signal = Double.isNaN(macd) ? Double.NaN : macdSignal.next(macd);
+    set(Indicator.MACD, i, macd);
+    set(Indicator.MACD_SIGNAL, i, signal);
+    set(Indicator.MACD_HISTOGRAM, i, macd - signal);
+
+    double range = high - low;
+    double rsi = Double.NaN;
+    if (i > 0) {
+      double previous = series.getClose(i - 1);
+      range = Math.max(range, Math.max(Math.abs(high - previous), Math.abs(low - previous)));
+      double change = close - previous;
+      rsi = rsiOf(averageGain.next(Math.max(change, 0)),
+              averageLoss.next(Math.max(-change, 0)));
+    }
+    set(Indicator.RSI, i, rsi);
+    set(Indicator.ATR, i, averageRange.next(range));
+
+    stepBollinger(i, close);
+  }
+
+  /**
+   * Helper method that turns the average gain and loss into the relative strength index.
+   */
+  private static double rsiOf(double gain, double loss) {
+    if (loss > 0) {
+      return 100 - 100 / (1 + gain / loss);
+    }
+    return Double.isNaN(loss) ? Double.NaN : gain > 0 ? 100 : 50;
+  }
+
+  /**
+   * Computes only the exponential moving average of one row, the same value an engine over
+   * the history would hold for it, without building any of the other indicators.
+   *
+   * @param series    represents the price history
+   * @param emaPeriod represents the number of days of the average
+   * @param row       represents the row
+   * @return the average, or NaN if there are fewer than emaPeriod rows up to the row
+   */
+  static double emaAt(PriceSeries series, int emaPeriod, int row) {
+    Smoother ema = new Smoother(emaPeriod, 2.0 / (emaPeriod + 1));
+    double value = Double.NaN;
+    for (int i = 0; i <= row; i++) {
+      value = ema.next(series.getClose(i));
+    }
+    return value;
+  }
+
+  /**
+   * Computes only the relative strength index of one row, the same value an engine over the
+   * history would hold for it, without building any of the other indicators.
+   *
+   * @param series represents the price history
+   * @param row    represents the row
+   * @return the RSI between 0 and 100, or NaN if there are no more than RSI_PERIOD rows up
+   *         to the row
+   */
+  static double rsiAt(PriceSeries series, int row) {
+    Smoother averageGain = new Smoother(RSI_PERIOD, 1.0 / RSI_PERIOD);
+    Smoother averageLoss = new Smoother(RSI_PERIOD, 1.0 / RSI_PERIOD);
+    double rsi = Double.NaN;
+    for (int i = 1; i <= row; i++) {
+      double change = series.getClose(i) - series.getClose(i - 1);
+      rsi = rsiOf(averageGain.next(Math.max(change, 0)),
+              averageLoss.next(Math.max(-change, 0)));
+    }
+    return rsi;
+  }
+
+  /**
+   * Helper method that slides the Bollinger window onto a row. The mean and the sum of
+   * squared deviations are updated with Welford's method, which stays accurate where the
+   * textbook sum-of-squares formula would cancel out.
+   */
+  private void stepBollinger(int i, double close) {
+    if (i < BOLLINGER_PERIOD) {
+      double delta = close - bollingerMean;
+      bollingerMean += delta / (i + 1);
+      bollingerSquares += delta * (close - bollingerMean);
+    } else {
+      double leaving = series.getClose(i - BOLLINGER_PERIOD);
+      double oldMean = bollingerMean;
+      bollingerMean += (close - leaving) / BOLLINGER_PERIOD;
+      bollingerSquares += (close - leaving) * (close - bollingerMean + leaving - oldMean);
+    }
+    if (i < BOLLINGER_PERIOD - 1) {
+      set(Indicator.BOLLINGER_MIDDLE, i, Double.NaN);
+      set(Indicator.BOLLINGER_UPPER, i, Double.NaN);
+      set(Indicator.BOLLINGER_LOWER, i, Double.NaN);
+      return;
+    }
+    double deviation = Math.sqrt(Math.max(bollingerSquares, 0) / BOLLINGER_PERIOD);
+    set(Indicator.BOLLINGER_MIDDLE, i, bollingerMean);
+    set(Indicator.BOLLINGER_UPPER, i, bollingerMean + BOLLINGER_WIDTH * deviation);
+    set(Indicator.BOLLINGER_LOWER, i, bollingerMean - BOLLINGER_WIDTH * deviation);
+  }
+
+  private void set(Indicator indicator, int row, double value) {
+    columns[indicator.ordinal()][row] = value;
+  }
+
+  /**
+   * Gets the history the indicators were computed from.
+   *
+   * @return the price history
+   */
+  public PriceSeries getSeries() {
+    return series;
+  }
+
+  /**
+   * Gets the number of days of the exponential moving average.
+   *
+   * @return the period of the EMA
+   */
+  public int getEmaPeriod() {
+    return emaPeriod;
+  }
+
+  /**
+   * Gets the value of an indicator on a row.
+   *
+   * @param indicator represents the indicator
+   * @param row       represents the row of the history
+   * @return the value, or NaN if there isn't enough data before the row
+   * @throws IndexOutOfBoundsException if the row isn't in the history
+   */
+  public double get(Indicator indicator, int row) {
+    if (row < 0 || row >= computed) {
+      throw new IndexOutOfBoundsException("Row " + row + " of " + computed);
+    }
+    return columns[indicator.ordinal()][row];
+  }
+
+  /**
+   * Copies a whole indicator column into a buffer, so a caller computing indicators
+   * repeatedly can keep reusing the same array.
+   *
+   * @param indicator represents the indicator
+   * @param buffer    represents the array to fill; may be null or too short
+   * @return the buffer if it was long enough, otherwise a new array, holding one value
+   *         per row of the history
+   */
+  public double[] copy(Indicator indicator, double[] buffer) {
+    double[] into = buffer != null && buffer.length >= computed ? buffer : new double[computed];
+    System.arraycopy(columns[indicator.ordinal()], 0, into, 0, computed);
+    return into;
+  }
+
+  /**
+   * An exponentially smoothed average, seeded with the simple average of its first period
+   * values as is usual for EMA, RSI and ATR.
+   */
+  private static final class Smoother {
+    private final int period;
+    private final double alpha;
+    private int count;
+    private double value;
+
+    private Smoother(int period, double alpha) {
+      this.period = period;
+      this.alpha = alpha;
+    }
+
+    /**
+     * Adds a value and returns the average, or NaN until period values have been added.
+     */
+    private double next(double x) {
+      if (count < period) {
+        value += x;
+        count++;
+        if (count < period) {
+          return Double.NaN;
+        }
+        value /= period;
+        return value;
+      }
+      value += alpha * (x - value);
+      return value;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package stock;
+
+/**
+ * The inner loops the analytics spend their time in: sum, maximum, minimum, dot product and
+ * element-wise returns over primitive arrays. The JIT compiler can't reorder floating-point
+ * additions, so it leaves the sum and dot product as one addition after another. When the
+ * program runs with {@code --add-modules jdk.incubator.vector} and was compiled with the
+ * sources in vector/, those two are done with the Vector API instead, several lanes at a
+ * time; their results can then differ from the plain loops in the last few bits. Without
+ * the module, the plain loops below are used. The other kernels are left to the JIT, which
+ * already vectorizes them.
+ */
+final class Kernels {
+  /**
+   * The sum and dot product of the Vector API, or null if they aren't available.
+   */
+  private static final Reductions VECTOR = loadVector();
+
+  private Kernels() {
+  }
+
+  /**
+   * The kernels that have a Vector API version.
+   */
+  interface Reductions {
+    double sum(double[] a, int from, int to);
+
+    double dot(double[] a, double[] b, int from, int to);
+  }
+
+  /**
+   * Helper method that loads the Vector API kernels if the incubator module is present and
+   * they were compiled in.
+   */
+  private static Reductions loadVector() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return null;
+    }
+    try {
+      return (Reductions) Class.forName("stock.VectorKernels")
+              .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // built without vector/, so the plain loops are used
+      return null;
+    }
+  }
+
+  /**
+   * Checks whether the sum and dot product use the Vector API.
+   *
+   * @return true if they do
+   */
+  static boolean isVectorized() {
+    return VECTOR != null;
+  }
+
+  /**
+   * Adds up a run of values.
+   *
+   * @param a    represents the values
+   * @param from represents the first index, inclusive
+   * @param to   represents the last index, exclusive
+   * @return the sum, 0 for an empty run
+   */
+  static double sum(double[] a, int from, int to) {
+    if (VECTOR != null) {
+      return VECTOR.sum(a, from, to);
+    }
+    double sum = 0;
+    for (int i = from; i < to; i++) {
+      sum += a[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Finds the largest of a run of values. The JIT already turns this loop into a SIMD
+   * reduction.
+   *
+   * @param a    represents the values
+   * @param from represents the first index, inclusive
+   * @param to   represents the last index, exclusive
+   * @return the maximum, NaN if any value is NaN, or negative infinity for an empty run
+   */
+  static double max(double[] a, int from, int to) {
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = from; i < to; i++) {
+      max = Math.max(max, a[i]);
+    }
+    return max;
+  }
+
+  /**
+   * Finds the smallest of a run of values, the same way as {@link #max}.
+   *
+   * @param a    represents the values
+   * @param from represents the first index, inclusive
+   * @param to   represents the last index, exclusive
+   * @return the minimum, NaN if any value is NaN, or positive infinity for an empty run
+   */
+  static double min(double[] a, int from, int to) {
+    double min = Double.POSITIVE_INFINITY;
+    for (int i = from; i < to; i++) {
+      min = Math.min(min, a[i]);
+    }
+    return min;
+  }
+
+  /**
+   * Multiplies two runs of values element by element and adds up the products, for example
+   * shares held times prices to value a portfolio.
+   *
+   * @param a    represents the first values
+   * @param b    represents the second values
+   * @param from represents the first index of both, inclusive
+   * @param to   represents the last index of both, exclusive
+   * @return the dot product, 0 for an empty run
+   */
+  static double dot(double[] a, double[] b, int from, int to) {
+    if (VECTOR != null) {
+      return VECTOR.dot(a, b, from, to);
+    }
+    double sum = 0;
+    for (int i = from; i < to; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Computes the simple return from each value to the next. Nothing can be lost or gained on
+   * nothing, so a return from zero is zero. There are no dependencies between elements, so
+   * this loop is left to the JIT to vectorize.
+   *
+   * @param values represents the values in time order
+   * @param out    represents where the returns go; out[i] is the return from values[i] to
+   *               values[i + 1]
+   * @param count  represents the number of returns to compute
+   */
+  static void returns(double[] values, double[] out, int count) {
+    for (int i = 0; i < count; i++) {
+      out[i] = values[i] > 0 ? values[i + 1] / values[i] - 1 : 0;
+    }
+  }
+}
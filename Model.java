@@ -1,6 +1,8 @@
 package stock;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +23,18 @@ public interface Model {
    */
   double calculateGainLoss(String recent, String initial);
 
+  /**
+   * Method that calculates whether a stock has grown or lost it's worth
+   * between two dates, either in dollars or as a percentage.
+   *
+   * @param recent  represents the recent date to compare stock price
+   * @param initial represents the older date to compare stock price
+   * @param percent represents whether to give the change as a percentage of
+   *                the price on the older date
+   * @return the gain or loss over a specified period
+   */
+  double calculateGainLoss(String recent, String initial, boolean percent);
+
   /**
    * Method that calculates the moving average of a
    * stock given a date and number of days.
@@ -42,6 +56,144 @@ public interface Model {
    */
   List<String> findCrossovers(String startDate, String endDate, int x);
 
+  /**
+   * Method that finds the days between two given dates on which a fast moving
+   * average crosses a slow one. Unlike findCrossovers, only the days the
+   * averages change sides are returned.
+   *
+   * @param startDate represents the starting date used for calculation
+   * @param endDate   represents the end date used for calculation
+   * @param fast      represents the number of days of the fast average; 1 uses the close
+   * @param slow      represents the number of days of the slow average
+   * @return the golden and death crosses in order, found lazily as the iterator is advanced
+   * @throws IllegalArgumentException if a date isn't a trading day or the periods aren't valid
+   */
+  Iterator<CrossDetector.Event> findCrossEvents(String startDate, String endDate,
+                                                int fast, int slow)
+          throws IllegalArgumentException;
+
+  /**
+   * Method that calculates the technical indicators of a stock on a
+   * given date: an x-day EMA, RSI, MACD, Bollinger bands and ATR.
+   *
+   * @param date represents the date to calculate the indicators on
+   * @param x    represents the number of days of the exponential moving average
+   * @return each indicator's name and value in display order, with NaN for an
+   *         indicator that doesn't have enough data before the date
+   * @throws IllegalArgumentException if the date isn't a trading day or x isn't positive
+   */
+  Map<String, Double> calculateIndicators(String date, int x) throws IllegalArgumentException;
+
+  /**
+   * Method that finds the highest price a stock traded at between two dates.
+   *
+   * @param startDate represents the first date of the range
+   * @param endDate   represents the last date of the range
+   * @return the highest daily high in the range
+   * @throws IllegalArgumentException if a date isn't a trading day or the range is empty
+   */
+  double getHighestHigh(String startDate, String endDate) throws IllegalArgumentException;
+
+  /**
+   * Method that finds the lowest price a stock traded at between two dates.
+   *
+   * @param startDate represents the first date of the range
+   * @param endDate   represents the last date of the range
+   * @return the lowest daily low in the range
+   * @throws IllegalArgumentException if a date isn't a trading day or the range is empty
+   */
+  double getLowestLow(String startDate, String endDate) throws IllegalArgumentException;
+
+  /**
+   * Method that finds the highest price a stock traded at in the 52 weeks
+   * up to and including a date.
+   *
+   * @param date represents the last date of the 52 weeks
+   * @return the 52-week high
+   * @throws IllegalArgumentException if the date isn't a trading day
+   */
+  double get52WeekHigh(String date) throws IllegalArgumentException;
+
+  /**
+   * Method that finds the lowest price a stock traded at in the 52 weeks
+   * up to and including a date.
+   *
+   * @param date represents the last date of the 52 weeks
+   * @return the 52-week low
+   * @throws IllegalArgumentException if the date isn't a trading day
+   */
+  double get52WeekLow(String date) throws IllegalArgumentException;
+
+  /**
+   * Method that calculates how far a stock's close on a date is below the
+   * highest close it ever reached up to that date.
+   *
+   * @param date represents the date to calculate the drawdown on
+   * @return the drawdown as a percentage of the peak, 0 if the close is the peak
+   * @throws IllegalArgumentException if the date isn't a trading day
+   */
+  double calculateDrawdown(String date) throws IllegalArgumentException;
+
+  /**
+   * Method that calculates how much a stock's close changed over each week,
+   * month, quarter or year between two dates, from the last close of one
+   * period to the last close of the next.
+   *
+   * @param startDate represents the first date of the range
+   * @param endDate   represents the last date of the range
+   * @param period    represents the length of each period
+   * @return the last trading day of each period that ended within the range
+   *         and its change as a percentage, in date order, with NaN for the
+   *         stock's first period
+   * @throws IllegalArgumentException if a date is invalid or the range is backwards
+   */
+  Map<String, Double> calculatePeriodReturns(String startDate, String endDate,
+                                             Resampler.Period period)
+          throws IllegalArgumentException;
+
+  /**
+   * Method that calculates the risk statistics of a stock over the x trading
+   * days ending on a date: the annualised volatility and Sharpe ratio of its
+   * daily returns and its largest drop from a peak.
+   *
+   * @param date represents the last date of the window
+   * @param x    represents the number of daily returns in the window, at least 2
+   * @return each statistic's name and value in display order, with NaN for a
+   *         statistic there isn't enough data for
+   * @throws IllegalArgumentException if the date isn't a trading day or x is less than 2
+   */
+  Map<String, Double> calculateRiskStatistics(String date, int x)
+          throws IllegalArgumentException;
+
+  /**
+   * Method that calculates rolling risk statistics of any series of values
+   * over time, for example the performance of a portfolio from
+   * calculatePerformance. The values are annualised from the average gap
+   * between their dates.
+   *
+   * @param values represents the values by date
+   * @param x      represents the number of returns in each window, at least 2
+   * @return the statistics for every window end, in date order
+   * @throws IllegalArgumentException if x is less than 2
+   */
+  RollingStatistics calculateRollingRisk(Map<LocalDate, Double> values, int x)
+          throws IllegalArgumentException;
+
+  /**
+   * Method that calculates the covariance and correlation of the daily
+   * returns of several stocks over the last x days they all traded. The
+   * result is kept, so asking again for the same stocks and x is free until
+   * one of their price histories changes.
+   *
+   * @param tickers represents the ticker symbols of the stocks
+   * @param x       represents the most daily returns to use
+   * @return the matrix, with the stocks in alphabetical order
+   * @throws IllegalArgumentException if a ticker has no price data or the stocks
+   *                                  have fewer than two returns on common days
+   */
+  CovarianceMatrix calculateCovariance(Collection<String> tickers, int x)
+          throws IllegalArgumentException;
+
   /**
    * Method that calculates the value of a portfolio
    * given a date and a name.
@@ -62,6 +214,16 @@ public interface Model {
    */
   void readURLFile(String symbol) throws IllegalArgumentException;
 
+  /**
+   * Method that brings the price history of a stock up to date by fetching
+   * only its most recent prices, rather than downloading the whole history
+   * again. Does nothing if the stock has already been refreshed today.
+   *
+   * @param symbol represents the ticker symbol of the stock
+   * @throws IllegalArgumentException if the prices couldn't be fetched
+   */
+  void refreshPrices(String symbol) throws IllegalArgumentException;
+
 
   /**
    * Method that removes a stock from a portfolio given the
@@ -94,6 +256,7 @@ public interface Model {
    *
    * @param name represents the name of the portfolio
    * @return the portfolio with the given name
+   * @throws IllegalArgumentException if there is no portfolio with the given name
    */
   BetterPortfolio getBetterPortfolio(String name);
 
@@ -155,10 +318,27 @@ public interface Model {
    */
   List<Double> getClosingPrices(String name, String date);
 
+  /**
+   * Method that values many portfolios on several dates at once, for example
+   * for a nightly job. The price history of every stock any of the portfolios
+   * holds is loaded once for the whole batch, and the portfolios are valued in
+   * parallel.
+   *
+   * @param names represents the names of the portfolios
+   * @param dates represents the dates in yyyy-MM-dd format
+   * @return the values with a row per portfolio and a column per date, and
+   *         how many portfolios were valued per second
+   * @throws IllegalArgumentException if a portfolio doesn't exist, a date is
+   *                                  invalid or a stock has no price data
+   */
+  BatchValuation valueBatch(List<String> names, List<String> dates)
+          throws IllegalArgumentException;
+
   /**
    * Adds a given portfolio to the profile.
    *
    * @param portfolio the portfolio to add to the profile
+   * @throws IllegalArgumentException if the profile already has a portfolio by that name
    */
   void addPortfolio(BetterPortfolio portfolio);
 
@@ -221,8 +401,9 @@ public interface Model {
    *
    * @param ticker represents the ticker symbol passed in
    * @return whether the ticker is a valid one
+   * @throws IllegalArgumentException if the symbol couldn't be looked up
    */
-  boolean checkValidTicker(String ticker);
+  boolean checkValidTicker(String ticker) throws IllegalArgumentException;
 
   /**
    * Method to check whether the amount of shares is a valid amoount.
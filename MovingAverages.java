@@ -0,0 +1,95 @@
+package stock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simple moving averages of closing prices, taken from the prefix sums a
+ * {@link PriceSeries} keeps of its closes. The x-day average ending on any row is the
+ * difference of two prefix sums divided by x, so it costs the same for a 5-day window as
+ * for a 200-day one, and a scan over a range of days is a single pass.
+ */
+public final class MovingAverages {
+  /**
+   * How close, relative to its size, a value must be to an average taken from prefix sums
+   * before rounding in the sums could decide which side of it the value is on.
+   */
+  static final double TIE_TOLERANCE = 1e-9;
+
+  private MovingAverages() {
+  }
+
+  /**
+   * Calculates the average close of the x trading days ending on a row.
+   *
+   * @param series represents the price history
+   * @param index  represents the last row of the window
+   * @param x      represents the number of trading days in the window
+   * @return the x-day moving average
+   * @throws IllegalArgumentException if x isn't positive or there are fewer than x rows up
+   *                                  to and including the given row
+   */
+  public static double simple(PriceSeries series, int index, int x)
+          throws IllegalArgumentException {
+    checkWindow(series, index, x);
+    double[] prefix = series.closePrefixSums();
+    return (prefix[index + 1] - prefix[index + 1 - x]) / x;
+  }
+
+  /**
+   * Finds the days in a range whose close is strictly above their x-day moving average.
+   * A close within rounding of its prefix-sum average is compared against the window
+   * summed one day at a time instead, so ties come out exactly as a plain loop would
+   * decide them.
+   *
+   * @param series represents the price history
+   * @param from   represents the first row of the range
+   * @param to     represents the last row of the range
+   * @param x      represents the number of trading days in each window
+   * @return the dates of those days as yyyy-MM-dd, in order
+   * @throws IllegalArgumentException if x isn't positive or there are fewer than x rows up
+   *                                  to and including the first row of the range
+   */
+  public static List<String> crossovers(PriceSeries series, int from, int to, int x)
+          throws IllegalArgumentException {
+    List<String> result = new ArrayList<>();
+    if (from > to) {
+      return result;
+    }
+    checkWindow(series, from, x);
+    double[] prefix = series.closePrefixSums();
+    for (int i = from; i <= to; i++) {
+      double close = series.getClose(i);
+      double gap = close - (prefix[i + 1] - prefix[i + 1 - x]) / x;
+      // a difference of prefix sums is off by a few ulps of the running total, so a gap
+      // that small is settled by summing the window itself
+      if (Math.abs(gap) <= TIE_TOLERANCE * Math.abs(close)) {
+        gap = close - windowSum(series, i, x) / x;
+      }
+      if (gap > 0) {
+        result.add(series.getDate(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Helper method that adds up the closes of the x days ending on a row, newest first.
+   */
+  private static double windowSum(PriceSeries series, int index, int x) {
+    double sum = 0;
+    for (int i = index; i > index - x; i--) {
+      sum += series.getClose(i);
+    }
+    return sum;
+  }
+
+  private static void checkWindow(PriceSeries series, int index, int x) {
+    if (x <= 0) {
+      throw new IllegalArgumentException("The number of days must be positive.");
+    }
+    if (index < 0 || index >= series.size() || index - x + 1 < 0) {
+      throw new IllegalArgumentException("Not enough data to calculate the moving average.");
+    }
+  }
+}
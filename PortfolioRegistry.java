@@ -0,0 +1,111 @@
+package stock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The portfolios of a profile, found by name in constant time. Names are indexed in a
+ * concurrent hash map, so lookups never wait on each other or on a portfolio being added,
+ * while the portfolios themselves are also kept in a list in the order they were added, for
+ * listing them. A name can only be registered once.
+ */
+public final class PortfolioRegistry implements Iterable<BetterPortfolio> {
+  private final ConcurrentHashMap<String, Slot> byName = new ConcurrentHashMap<>();
+  private final List<BetterPortfolio> inOrder = new ArrayList<>();
+
+  /**
+   * A portfolio and its position in the order of registration.
+   */
+  private static final class Slot {
+    private final int index;
+    private final BetterPortfolio portfolio;
+
+    private Slot(int index, BetterPortfolio portfolio) {
+      this.index = index;
+      this.portfolio = portfolio;
+    }
+  }
+
+  /**
+   * Registers a portfolio under its name.
+   *
+   * @param portfolio represents the portfolio
+   * @throws IllegalArgumentException if a portfolio with the same name is registered
+   */
+  public synchronized void add(BetterPortfolio portfolio) {
+    Slot slot = new Slot(inOrder.size(), portfolio);
+    if (byName.putIfAbsent(portfolio.getName(), slot) != null) {
+      throw new IllegalArgumentException("A portfolio named " + portfolio.getName()
+              + " already exists.");
+    }
+    inOrder.add(portfolio);
+  }
+
+  /**
+   * Finds a portfolio by name.
+   *
+   * @param name represents the name of the portfolio
+   * @return the portfolio, or null if there is none by that name
+   */
+  public BetterPortfolio get(String name) {
+    Slot slot = byName.get(name);
+    return slot == null ? null : slot.portfolio;
+  }
+
+  /**
+   * Finds the position of a portfolio in the order portfolios were registered.
+   *
+   * @param name represents the name of the portfolio
+   * @return the position, or -1 if there is no portfolio by that name
+   */
+  public int indexOf(String name) {
+    Slot slot = byName.get(name);
+    return slot == null ? -1 : slot.index;
+  }
+
+  /**
+   * Checks whether a portfolio is registered under a name.
+   *
+   * @param name represents the name of the portfolio
+   * @return true if there is a portfolio by that name
+   */
+  public boolean contains(String name) {
+    return byName.containsKey(name);
+  }
+
+  /**
+   * Gets the number of portfolios.
+   *
+   * @return the number of portfolios
+   */
+  public int size() {
+    return byName.size();
+  }
+
+  /**
+   * Checks whether any portfolio has been registered.
+   *
+   * @return true if there are no portfolios
+   */
+  public boolean isEmpty() {
+    return byName.isEmpty();
+  }
+
+  /**
+   * Gets every portfolio in the order they were registered, as they are now; portfolios
+   * registered afterwards aren't included.
+   *
+   * @return the portfolios
+   */
+  public synchronized List<BetterPortfolio> list() {
+    return Collections.unmodifiableList(new ArrayList<>(inOrder));
+  }
+
+  @Override
+  public Iterator<BetterPortfolio> iterator() {
+    return list().iterator();
+  }
+}
@@ -0,0 +1,88 @@
+package stock;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Values a portfolio on many dates at once. Rather than working out the shares and price of
+ * every stock afresh for each date, the holdings of every stock on a date come from the
+ * monthly checkpoints of the portfolio's {@link HoldingsLedger}, each stock's history is
+ * fetched once, the first time shares of it are held, and values are added into a primitive
+ * array indexed like the dates. Dates are visited in ascending order, so the checkpoints are
+ * built as the valuation moves forward.
+ */
+final class PortfolioValuation {
+  private final int[] days;
+  private final int[] order;
+
+  /**
+   * Prepares to value portfolios on the given dates.
+   *
+   * @param dates represents the dates, in any order
+   */
+  PortfolioValuation(List<LocalDate> dates) {
+    int n = dates.size();
+    days = new int[n];
+    Integer[] sorted = new Integer[n];
+    for (int t = 0; t < n; t++) {
+      days[t] = (int) dates.get(t).toEpochDay();
+      sorted[t] = t;
+    }
+    Arrays.sort(sorted, (a, b) -> Integer.compare(days[a], days[b]));
+    order = new int[n];
+    for (int t = 0; t < n; t++) {
+      order[t] = sorted[t];
+    }
+  }
+
+  /**
+   * Gets the number of dates.
+   *
+   * @return the number of dates
+   */
+  int size() {
+    return days.length;
+  }
+
+  /**
+   * Values a portfolio on every date.
+   *
+   * @param ledger    represents the portfolio's lots
+   * @param histories represents where the price history of a ticker comes from
+   * @return the value on each date, in the order the dates were given
+   * @throws IllegalArgumentException if shares are held on a date outside the history of
+   *                                  their stock, naming the stock and the date
+   */
+  double[] value(HoldingsLedger ledger, Function<String, PriceSeries> histories) {
+    double[] values = new double[days.length];
+    List<String> tickers = ledger.getTickers();
+    PriceSeries[] series = new PriceSeries[tickers.size()];
+    for (int t : order) {
+      double[] holdings = ledger.holdingsAsOf(days[t]);
+      for (int c = 0; c < holdings.length; c++) {
+        if (holdings[c] == 0) {
+          continue;
+        }
+        if (series[c] == null) {
+          series[c] = histories.apply(tickers.get(c));
+        }
+        values[t] += holdings[c] * closeOn(series[c], days[t]);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Helper method that gets a stock's close on a day, or on the last trading day before it.
+   */
+  private double closeOn(PriceSeries series, int day) {
+    if (series.isEmpty() || day < series.getEpochDay(0)
+            || day > series.getEpochDay(series.size() - 1)) {
+      throw new IllegalArgumentException("No price data found for " + series.getTicker()
+              + " on " + LocalDate.ofEpochDay(day));
+    }
+    return series.getClose(series.floorIndex(day));
+  }
+}
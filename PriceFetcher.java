@@ -0,0 +1,227 @@
+package stock;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads price histories from a {@link PriceSource} on a pool of worker threads, so the
+ * histories of every stock in a portfolio can be fetched at the same time instead of one
+ * after another. Waiting requests are ordered by priority: a request the user is waiting
+ * on is started before background warm-up work, and requests of equal priority are started
+ * in the order they were made. How fast requests reach the network is up to the source,
+ * for example an {@link HttpPriceSource} with a {@link RateLimiter}.
+ *
+ * <p>Loads are single-flight: while a ticker is being loaded, further requests for it share
+ * the load already under way instead of starting another one, so a burst of lookups of the
+ * same stock costs one download and one parse.
+ */
+public class PriceFetcher implements AutoCloseable {
+
+  /**
+   * How urgently a history is needed.
+   */
+  public enum Priority {
+    INTERACTIVE, BACKGROUND
+  }
+
+  private final PriceSource source;
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong sequence;
+  private final ConcurrentHashMap<String, Flight> inFlight;
+  private final AtomicLong loads;
+  private final AtomicLong coalesced;
+
+  /**
+   * Constructs a fetcher with the given number of worker threads.
+   *
+   * @param source  represents where histories are loaded from
+   * @param threads represents the number of histories that may be loaded at once
+   * @throws IllegalArgumentException if threads isn't positive
+   */
+  public PriceFetcher(PriceSource source, int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("A fetcher needs at least one thread");
+    }
+    this.source = source;
+    this.sequence = new AtomicLong();
+    this.inFlight = new ConcurrentHashMap<>();
+    this.loads = new AtomicLong();
+    this.coalesced = new AtomicLong();
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory factory = r -> {
+      Thread t = new Thread(r, "price-fetcher-" + count.incrementAndGet());
+      // loading prices should never keep the program from exiting
+      t.setDaemon(true);
+      return t;
+    };
+    this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(), factory);
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Starts loading the history of a ticker, or joins the load already under way for it.
+   * Joining a background load at interactive priority moves it ahead of other background
+   * work.
+   *
+   * @param ticker   represents the upper-case ticker symbol
+   * @param priority represents how urgently the history is needed
+   * @return a future of the history, completed with null if the source doesn't have the
+   *         ticker, or completed exceptionally if it couldn't be loaded
+   */
+  public CompletableFuture<PriceSeries> fetch(String ticker, Priority priority) {
+    Flight created = new Flight(ticker);
+    Flight flight = inFlight.putIfAbsent(ticker, created);
+    if (flight == null) {
+      flight = created;
+      loads.incrementAndGet();
+      // the flight is forgotten as soon as it lands, so later fetches load fresh data
+      Flight landed = flight;
+      flight.result.whenComplete((series, error) -> inFlight.remove(ticker, landed));
+    } else {
+      coalesced.incrementAndGet();
+      if (priority.compareTo(flight.priority) >= 0) {
+        return flight.result;
+      }
+    }
+    // a more urgent request queues another task for the same flight; whichever task runs
+    // first does the load and the other finds it started and does nothing
+    flight.priority = priority;
+    try {
+      executor.execute(new Task(flight, priority, sequence.getAndIncrement()));
+    } catch (RejectedExecutionException e) {
+      flight.result.completeExceptionally(e);
+    }
+    return flight.result;
+  }
+
+  /**
+   * Starts loading the histories of several tickers at once.
+   *
+   * @param tickers  represents the upper-case ticker symbols
+   * @param priority represents how urgently the histories are needed
+   * @return a future for each ticker, in the order given
+   */
+  public Map<String, CompletableFuture<PriceSeries>> fetchAll(Collection<String> tickers,
+                                                              Priority priority) {
+    Map<String, CompletableFuture<PriceSeries>> results = new LinkedHashMap<>();
+    for (String ticker : tickers) {
+      results.computeIfAbsent(ticker, t -> fetch(t, priority));
+    }
+    return results;
+  }
+
+  /**
+   * Gets the number of loads started, which is the number of requests that weren't
+   * coalesced.
+   *
+   * @return the number of loads
+   */
+  public long getLoads() {
+    return loads.get();
+  }
+
+  /**
+   * Gets the number of requests that joined a load already under way instead of starting
+   * their own.
+   *
+   * @return the number of coalesced requests
+   */
+  public long getCoalesced() {
+    return coalesced.get();
+  }
+
+  /**
+   * Gets the number of tickers currently being loaded or waiting to be loaded.
+   *
+   * @return the number of loads in flight
+   */
+  public int getInFlight() {
+    return inFlight.size();
+  }
+
+  /**
+   * Gets the number of requests waiting for a worker thread.
+   *
+   * @return the number of queued requests
+   */
+  public int getQueued() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Stops the worker threads. Requests that haven't started are dropped.
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public String toString() {
+    return "PriceFetcher[" + loads.get() + " loads, " + coalesced.get() + " coalesced, "
+            + inFlight.size() + " in flight]";
+  }
+
+  /**
+   * The load of one ticker, shared by every request made while it is under way.
+   */
+  private static final class Flight {
+    private final String ticker;
+    private final CompletableFuture<PriceSeries> result;
+    private final AtomicBoolean started;
+    private volatile Priority priority;
+
+    private Flight(String ticker) {
+      this.ticker = ticker;
+      this.result = new CompletableFuture<>();
+      this.started = new AtomicBoolean();
+      this.priority = Priority.BACKGROUND;
+    }
+  }
+
+  /**
+   * A queued request, ordered by priority and then by when it was made.
+   */
+  private final class Task implements Runnable, Comparable<Task> {
+    private final Flight flight;
+    private final Priority priority;
+    private final long order;
+
+    private Task(Flight flight, Priority priority, long order) {
+      this.flight = flight;
+      this.priority = priority;
+      this.order = order;
+    }
+
+    @Override
+    public void run() {
+      if (!flight.started.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        flight.result.complete(source.load(flight.ticker));
+      } catch (IOException | RuntimeException e) {
+        flight.result.completeExceptionally(e);
+      }
+    }
+
+    @Override
+    public int compareTo(Task other) {
+      int byPriority = priority.compareTo(other.priority);
+      return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package stock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Brings loaded price histories up to date without downloading them again. A refresh asks
+ * the web api for only the most recent 100 trading days, merges them into the history
+ * already held, and appends just the new rows to the history's binary snapshot. Each
+ * ticker has a watermark, the day it was last refreshed, which is kept in its snapshot so
+ * a history is refreshed at most once a day even across runs.
+ */
+public class PriceRefresher {
+  private final HttpPriceSource http;
+  private final Path directory;
+  private final PriceSource local;
+  private final Map<String, Integer> watermarks;
+
+  /**
+   * Constructs a refresher.
+   *
+   * @param http      represents the web api to fetch recent prices from
+   * @param directory represents the directory the snapshots are kept in
+   */
+  public PriceRefresher(HttpPriceSource http, Path directory) {
+    this.http = http;
+    this.directory = directory;
+    this.local = new ChainedPriceSource(List.of(new SnapshotPriceSource(directory),
+            new CsvPriceSource(directory)));
+    this.watermarks = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Loads the history of a ticker kept in the snapshot directory, without going to the
+   * web api, so a refresh can start from it.
+   *
+   * @param ticker represents the upper-case ticker symbol
+   * @return the history, or an empty one if none is kept locally, in which case a
+   *         refresh downloads the full history in a single request
+   * @throws IOException if a local file exists but can't be read
+   */
+  public PriceSeries loadLocal(String ticker) throws IOException {
+    PriceSeries series = local.load(ticker);
+    return series == null ? PriceSeries.empty(ticker) : series;
+  }
+
+  /**
+   * Gets the day a ticker was last refreshed.
+   *
+   * @param ticker represents the upper-case ticker symbol
+   * @return the epoch day of the last refresh, or {@link PriceSnapshot#NEVER_REFRESHED}
+   */
+  public int getRefreshedDay(String ticker) {
+    return watermarks.computeIfAbsent(ticker,
+        t -> PriceSnapshot.readRefreshedDay(csvPath(t)));
+  }
+
+  /**
+   * Checks whether a ticker has not been refreshed yet today.
+   *
+   * @param ticker represents the upper-case ticker symbol
+   * @return true if the ticker should be refreshed
+   */
+  public boolean isStale(String ticker) {
+    return getRefreshedDay(ticker) < LocalDate.now().toEpochDay();
+  }
+
+  /**
+   * Refreshes a history with the latest prices from the web api. If the recent prices
+   * don't reach back to the end of the history, for example after a long time offline,
+   * the full history is downloaded instead. If the api has nothing for the ticker, the
+   * history is returned unchanged and the watermark isn't moved.
+   *
+   * @param current represents the history held now; may be empty
+   * @return the refreshed history
+   * @throws IOException if the prices couldn't be downloaded
+   */
+  public PriceSeries refresh(PriceSeries current) throws IOException {
+    String ticker = current.getTicker();
+    int today = (int) LocalDate.now().toEpochDay();
+
+    PriceSeries refreshed;
+    boolean appendable = false;
+    if (current.isEmpty()) {
+      refreshed = http.load(ticker);
+    } else {
+      PriceSeries recent = http.loadRecent(ticker);
+      if (recent == null) {
+        return current;
+      }
+      if (recent.getEpochDay(0) > current.getEpochDay(current.size() - 1)) {
+        // there may be trading days missing between the two, so start over
+        refreshed = http.load(ticker);
+      } else {
+        refreshed = current.merge(recent);
+        // only the rows the recent prices overlap can differ from the snapshot
+        int firstOverlap = current.floorIndex(recent.getEpochDay(0) - 1) + 1;
+        appendable = refreshed.startsWith(current, firstOverlap);
+      }
+    }
+    if (refreshed == null) {
+      return current;
+    }
+
+    Path csv = csvPath(ticker);
+    if (!appendable || !PriceSnapshot.append(refreshed, current.size(), csv, today)) {
+      PriceSnapshot.write(refreshed, csv, today);
+    }
+    watermarks.put(ticker, today);
+    return refreshed;
+  }
+
+  private Path csvPath(String ticker) {
+    return directory.resolve(ticker + ".csv");
+  }
+}
@@ -0,0 +1,520 @@
+package stock;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * An immutable, column-oriented price history of a single stock. Each trading day is a row
+ * and every column is a primitive array, so the prices are parsed once when the history is
+ * read and never again when they are used in calculations. Rows are always kept in
+ * chronological order (oldest first), no matter what order the source listed them in.
+ */
+public final class PriceSeries {
+  private final String ticker;
+  private final int[] days;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+  private final double[] volume;
+  private volatile double[] closePrefix;
+  private volatile double[] simpleReturns;
+  private volatile double[] logReturns;
+  private volatile double[] logReturnPrefix;
+  private volatile SparseTable highestHighs;
+  private volatile SparseTable lowestLows;
+  private volatile SparseTable highestCloses;
+  private volatile PriceSeries[] bars;
+
+  /**
+   * Constructs a price series from already parsed columns. The columns must all have the
+   * same length and the epoch days must be in ascending order.
+   *
+   * @param ticker represents the ticker symbol of the stock
+   * @param days   represents the trading days, as days since 1970-01-01
+   * @param open   represents the opening prices
+   * @param high   represents the highest prices
+   * @param low    represents the lowest prices
+   * @param close  represents the closing prices
+   * @param volume represents the number of shares traded
+   */
+  PriceSeries(String ticker, int[] days, double[] open, double[] high,
+              double[] low, double[] close, double[] volume) {
+    int n = days.length;
+    if (open.length != n || high.length != n || low.length != n
+            || close.length != n || volume.length != n) {
+      throw new IllegalArgumentException("Price columns must all have the same length");
+    }
+    this.ticker = ticker;
+    this.days = days;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+  }
+
+  /**
+   * Returns a price series with no rows for the given ticker.
+   *
+   * @param ticker represents the ticker symbol of the stock
+   * @return an empty price series
+   */
+  public static PriceSeries empty(String ticker) {
+    return new PriceSeries(ticker, new int[0], new double[0], new double[0],
+            new double[0], new double[0], new double[0]);
+  }
+
+  /**
+   * Helper method that trims parsed columns to their size and puts the rows in
+   * chronological order. Sources list rows either oldest first (the bundled csv files)
+   * or newest first (Alpha Vantage), so a descending series is simply reversed.
+   *
+   * @param size represents the number of rows that were parsed
+   * @return a price series over the first size rows of the columns
+   */
+  static PriceSeries fromColumns(String ticker, int size, int[] days, double[] open,
+                                 double[] high, double[] low, double[] close,
+                                 double[] volume) {
+    days = Arrays.copyOf(days, size);
+    open = Arrays.copyOf(open, size);
+    high = Arrays.copyOf(high, size);
+    low = Arrays.copyOf(low, size);
+    close = Arrays.copyOf(close, size);
+    volume = Arrays.copyOf(volume, size);
+
+    if (size > 1 && days[0] > days[size - 1]) {
+      reverse(days);
+      reverse(open);
+      reverse(high);
+      reverse(low);
+      reverse(close);
+      reverse(volume);
+    }
+    for (int i = 1; i < size; i++) {
+      if (days[i] <= days[i - 1]) {
+        throw new IllegalArgumentException("Price data for " + ticker
+                + " is not in date order");
+      }
+    }
+    return new PriceSeries(ticker, days, open, high, low, close, volume);
+  }
+
+  private static void reverse(int[] a) {
+    for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+      int t = a[i];
+      a[i] = a[j];
+      a[j] = t;
+    }
+  }
+
+  private static void reverse(double[] a) {
+    for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+      double t = a[i];
+      a[i] = a[j];
+      a[j] = t;
+    }
+  }
+
+  /**
+   * Gets the ticker symbol of this series.
+   *
+   * @return the ticker symbol
+   */
+  public String getTicker() {
+    return ticker;
+  }
+
+  /**
+   * Gets the number of trading days in this series.
+   *
+   * @return the number of rows
+   */
+  public int size() {
+    return days.length;
+  }
+
+  /**
+   * Checks whether this series has no trading days.
+   *
+   * @return true if there are no rows
+   */
+  public boolean isEmpty() {
+    return days.length == 0;
+  }
+
+  /**
+   * Gets the trading day of a row as the number of days since 1970-01-01.
+   *
+   * @param index represents the row
+   * @return the epoch day of the row
+   */
+  public int getEpochDay(int index) {
+    return days[index];
+  }
+
+  /**
+   * Finds the row of an exact trading day.
+   *
+   * @param epochDay represents the day as the number of days since 1970-01-01
+   * @return the row of that day, or -1 if it isn't a trading day in this series
+   */
+  public int indexOf(int epochDay) {
+    int i = Arrays.binarySearch(days, epochDay);
+    return i >= 0 ? i : -1;
+  }
+
+  /**
+   * Finds the last trading day on or before the given day.
+   *
+   * @param epochDay represents the day as the number of days since 1970-01-01
+   * @return the row of the last trading day on or before that day, or -1 if
+   *         the day is before the start of this series
+   */
+  public int floorIndex(int epochDay) {
+    int i = Arrays.binarySearch(days, epochDay);
+    // a miss returns -(insertion point) - 1, and the row before the insertion point is the floor
+    return i >= 0 ? i : -i - 2;
+  }
+
+  /**
+   * Gets the trading day of a row formatted as yyyy-MM-dd.
+   *
+   * @param index represents the row
+   * @return the date of the row
+   */
+  public String getDate(int index) {
+    return LocalDate.ofEpochDay(days[index]).toString();
+  }
+
+  /**
+   * Gets the opening price of a row.
+   *
+   * @param index represents the row
+   * @return the opening price
+   */
+  public double getOpen(int index) {
+    return open[index];
+  }
+
+  /**
+   * Gets the highest price of a row.
+   *
+   * @param index represents the row
+   * @return the highest price
+   */
+  public double getHigh(int index) {
+    return high[index];
+  }
+
+  /**
+   * Gets the lowest price of a row.
+   *
+   * @param index represents the row
+   * @return the lowest price
+   */
+  public double getLow(int index) {
+    return low[index];
+  }
+
+  /**
+   * Gets the closing price of a row.
+   *
+   * @param index represents the row
+   * @return the closing price
+   */
+  public double getClose(int index) {
+    return close[index];
+  }
+
+  /**
+   * Gets the number of shares traded in a row.
+   *
+   * @param index represents the row
+   * @return the volume
+   */
+  public double getVolume(int index) {
+    return volume[index];
+  }
+
+  /**
+   * Gets the running totals of the closing prices, computed the first time they are asked
+   * for. Entry i is the sum of the closes of rows [0, i), so the sum of any run of rows is
+   * the difference of two entries.
+   *
+   * @return the n + 1 prefix sums of the closing prices; must not be modified
+   */
+  double[] closePrefixSums() {
+    double[] prefix = closePrefix;
+    if (prefix == null) {
+      // racing threads compute identical arrays, so whichever is kept doesn't matter
+      prefix = new double[close.length + 1];
+      for (int i = 0; i < close.length; i++) {
+        prefix[i + 1] = prefix[i] + close[i];
+      }
+      closePrefix = prefix;
+    }
+    return prefix;
+  }
+
+  /**
+   * Gets the simple return of a row, the relative change of its close from the close of
+   * the row before. A return from a close of zero is zero. The return columns are computed
+   * the first time any of them is asked for.
+   *
+   * @param index represents the row
+   * @return the return as a fraction, e.g. 0.01 for 1%, or NaN for the first row
+   */
+  public double getReturn(int index) {
+    double[] returns = simpleReturns;
+    if (returns == null) {
+      returns = new double[close.length];
+      if (close.length > 0) {
+        returns[0] = Double.NaN;
+        double[] shifted = new double[close.length - 1];
+        Kernels.returns(close, shifted, shifted.length);
+        System.arraycopy(shifted, 0, returns, 1, shifted.length);
+      }
+      simpleReturns = returns;
+    }
+    return returns[index];
+  }
+
+  /**
+   * Gets the log return of a row, the natural log of its close over the close of the row
+   * before. Log returns add up, so the log return over several days is their sum. A return
+   * from a close of zero is zero.
+   *
+   * @param index represents the row
+   * @return the log return, or NaN for the first row
+   */
+  public double getLogReturn(int index) {
+    return logReturns()[index];
+  }
+
+  /**
+   * Gets the simple return from the close of one row to the close of a later one, in
+   * constant time from the running total of log returns. A return from a close of zero is
+   * zero.
+   *
+   * @param from represents the earlier row
+   * @param to   represents the later row
+   * @return the return as a fraction, e.g. 0.25 for 25%
+   * @throws IllegalArgumentException if from is after to
+   */
+  public double returnBetween(int from, int to) {
+    double log = logReturnBetween(from, to);
+    if (Double.isFinite(log)) {
+      return Math.expm1(log);
+    }
+    return close[from] > 0 ? close[to] / close[from] - 1 : 0;
+  }
+
+  /**
+   * Gets the log return from the close of one row to the close of a later one, in
+   * constant time from the running total of log returns. A close that isn't a positive
+   * number makes the running total infinite or NaN from that row on, so a range that meets
+   * one is worked out from its two closes instead.
+   *
+   * @param from represents the earlier row
+   * @param to   represents the later row
+   * @return the log return
+   * @throws IllegalArgumentException if from is after to
+   */
+  public double logReturnBetween(int from, int to) {
+    if (from > to) {
+      throw new IllegalArgumentException("The start date must be before the end date.");
+    }
+    double[] prefix = logReturnPrefix;
+    if (prefix == null) {
+      double[] logs = logReturns();
+      // entry i is the log return from the first row to row i
+      prefix = new double[logs.length];
+      for (int i = 1; i < logs.length; i++) {
+        prefix[i] = prefix[i - 1] + logs[i];
+      }
+      logReturnPrefix = prefix;
+    }
+    double log = prefix[to] - prefix[from];
+    if (Double.isFinite(log)) {
+      return log;
+    }
+    return close[from] > 0 ? Math.log(close[to] / close[from]) : 0;
+  }
+
+  private double[] logReturns() {
+    double[] logs = logReturns;
+    if (logs == null) {
+      logs = new double[close.length];
+      if (close.length > 0) {
+        logs[0] = Double.NaN;
+      }
+      for (int i = 1; i < close.length; i++) {
+        logs[i] = close[i - 1] > 0 ? Math.log(close[i] / close[i - 1]) : 0;
+      }
+      logReturns = logs;
+    }
+    return logs;
+  }
+
+  /**
+   * Finds the day with the highest high between two rows. The lookup table is built the
+   * first time it is needed, after which every query takes constant time.
+   *
+   * @param from represents the first row, inclusive
+   * @param to   represents the last row, inclusive
+   * @return the row with the highest high, the earliest if there are several
+   * @throws IndexOutOfBoundsException if the range is empty or outside this series
+   */
+  public int highestHighIndex(int from, int to) {
+    SparseTable table = highestHighs;
+    if (table == null) {
+      table = new SparseTable(high, true);
+      highestHighs = table;
+    }
+    return table.query(from, to);
+  }
+
+  /**
+   * Finds the day with the lowest low between two rows.
+   *
+   * @param from represents the first row, inclusive
+   * @param to   represents the last row, inclusive
+   * @return the row with the lowest low, the earliest if there are several
+   * @throws IndexOutOfBoundsException if the range is empty or outside this series
+   */
+  public int lowestLowIndex(int from, int to) {
+    SparseTable table = lowestLows;
+    if (table == null) {
+      table = new SparseTable(low, false);
+      lowestLows = table;
+    }
+    return table.query(from, to);
+  }
+
+  /**
+   * Finds the day with the highest close between two rows.
+   *
+   * @param from represents the first row, inclusive
+   * @param to   represents the last row, inclusive
+   * @return the row with the highest close, the earliest if there are several
+   * @throws IndexOutOfBoundsException if the range is empty or outside this series
+   */
+  public int highestCloseIndex(int from, int to) {
+    SparseTable table = highestCloses;
+    if (table == null) {
+      table = new SparseTable(close, true);
+      highestCloses = table;
+    }
+    return table.query(from, to);
+  }
+
+  /**
+   * Gets this history resampled into weekly, monthly, quarterly or yearly bars. The bars of
+   * every period are built together the first time any of them is asked for.
+   *
+   * @param period represents the length of time each bar covers
+   * @return the bars, one row per period, dated on the last trading day of the period
+   * @see Resampler
+   */
+  public PriceSeries getBars(Resampler.Period period) {
+    PriceSeries[] resampled = bars;
+    if (resampled == null) {
+      resampled = Resampler.resampleAll(this);
+      bars = resampled;
+    }
+    return resampled[period.ordinal()];
+  }
+
+  /**
+   * Combines this history with a more recent stretch of the same stock's history, such as
+   * the last hundred days fetched by a refresh. Rows of the recent history replace the rows
+   * of this one over the days it spans, and rows of this history outside that span are
+   * kept.
+   *
+   * @param recent represents the newer rows
+   * @return the combined history, or this history if recent has no rows
+   */
+  public PriceSeries merge(PriceSeries recent) {
+    if (recent.isEmpty()) {
+      return this;
+    }
+    int n = size();
+    int m = recent.size();
+    // rows [0, start) come before the recent span and rows [end, n) come after it
+    int start = floorIndex(recent.days[0] - 1) + 1;
+    int end = floorIndex(recent.days[m - 1]) + 1;
+    int size = start + m + (n - end);
+
+    int[] mergedDays = new int[size];
+    System.arraycopy(days, 0, mergedDays, 0, start);
+    System.arraycopy(recent.days, 0, mergedDays, start, m);
+    System.arraycopy(days, end, mergedDays, start + m, n - end);
+    return new PriceSeries(ticker, mergedDays,
+            merge(open, recent.open, start, end, size),
+            merge(high, recent.high, start, end, size),
+            merge(low, recent.low, start, end, size),
+            merge(close, recent.close, start, end, size),
+            merge(volume, recent.volume, start, end, size));
+  }
+
+  private static double[] merge(double[] older, double[] recent, int start, int end,
+                                int size) {
+    double[] merged = new double[size];
+    System.arraycopy(older, 0, merged, 0, start);
+    System.arraycopy(recent, 0, merged, start, recent.length);
+    System.arraycopy(older, end, merged, start + recent.length, older.length - end);
+    return merged;
+  }
+
+  /**
+   * Checks whether the first rows of this series are exactly the rows of another series.
+   *
+   * @param prefix represents the series that may be a prefix of this one
+   * @param from   represents the first row to compare; rows before it are assumed equal
+   * @return true if every row of prefix from the given row on matches this series
+   */
+  public boolean startsWith(PriceSeries prefix, int from) {
+    if (prefix.size() > size()) {
+      return false;
+    }
+    for (int i = Math.max(0, from); i < prefix.size(); i++) {
+      if (days[i] != prefix.days[i] || open[i] != prefix.open[i] || high[i] != prefix.high[i]
+              || low[i] != prefix.low[i] || close[i] != prefix.close[i]
+              || volume[i] != prefix.volume[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Estimates how many bytes of heap this series holds on to: its columns plus whichever
+   * derived columns, lookup tables and bars have been built so far. The estimate grows as
+   * those are built, so a cache charging for the series should ask again after using it.
+   *
+   * @return the approximate size of the series in bytes
+   */
+  public long estimatedBytes() {
+    // six array headers plus 4 bytes per epoch day and 8 bytes per price
+    long bytes = 6L * 16 + (long) days.length * (4 + 5 * 8);
+    bytes += arrayBytes(closePrefix) + arrayBytes(simpleReturns) + arrayBytes(logReturns)
+            + arrayBytes(logReturnPrefix);
+    bytes += tableBytes(highestHighs) + tableBytes(lowestLows) + tableBytes(highestCloses);
+    PriceSeries[] resampled = bars;
+    if (resampled != null) {
+      for (PriceSeries bar : resampled) {
+        bytes += bar.estimatedBytes();
+      }
+    }
+    return bytes;
+  }
+
+  private static long arrayBytes(double[] array) {
+    return array == null ? 0 : 16 + 8L * array.length;
+  }
+
+  private static long tableBytes(SparseTable table) {
+    return table == null ? 0 : table.estimatedBytes();
+  }
+}
@@ -0,0 +1,219 @@
+package stock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of loaded price histories keyed by ticker symbol. The cache holds on to as many
+ * series as fit in its byte budget; when a new series doesn't fit, the series that was used
+ * least recently is evicted first. A series grows as derived columns and tables are built
+ * on it, so its size is checked again each time it is looked up and the cache is charged
+ * for the difference. Hits, misses and evictions are counted so the cache can be tuned.
+ */
+public class PriceSeriesCache {
+  /**
+   * The default budget of 64 MB, enough for several thousand typical daily histories.
+   */
+  public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+  private final long budgetBytes;
+  private final LinkedHashMap<String, PriceSeries> entries;
+  private final Map<String, Long> charged;
+  private long usedBytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Constructs a cache with the default byte budget.
+   */
+  public PriceSeriesCache() {
+    this(DEFAULT_BUDGET_BYTES);
+  }
+
+  /**
+   * Constructs a cache with the given byte budget.
+   *
+   * @param budgetBytes represents the most bytes of price data the cache may hold
+   * @throws IllegalArgumentException if the budget isn't positive
+   */
+  public PriceSeriesCache(long budgetBytes) {
+    if (budgetBytes <= 0) {
+      throw new IllegalArgumentException("Cache budget must be positive");
+    }
+    this.budgetBytes = budgetBytes;
+    // access order, so iteration starts at the least recently used series
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.charged = new HashMap<>();
+  }
+
+  /**
+   * Gets the cached series for a ticker and marks it as recently used.
+   *
+   * @param ticker represents the ticker symbol
+   * @return the cached series, or null if the ticker isn't cached
+   */
+  public synchronized PriceSeries get(String ticker) {
+    PriceSeries series = entries.get(ticker);
+    if (series == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    // charge for anything built on the series since it was last looked at
+    long size = series.estimatedBytes();
+    long before = charged.put(ticker, size);
+    usedBytes += size - before;
+    Iterator<Map.Entry<String, PriceSeries>> it = entries.entrySet().iterator();
+    while (usedBytes > budgetBytes && entries.size() > 1) {
+      evict(it);
+    }
+    return series;
+  }
+
+  /**
+   * Helper method that evicts the next series of an iteration over the entries.
+   */
+  private void evict(Iterator<Map.Entry<String, PriceSeries>> it) {
+    usedBytes -= charged.remove(it.next().getKey());
+    it.remove();
+    evictions++;
+  }
+
+  /**
+   * Checks whether a ticker is cached without counting a hit or miss.
+   *
+   * @param ticker represents the ticker symbol
+   * @return true if the ticker is cached
+   */
+  public synchronized boolean contains(String ticker) {
+    return entries.containsKey(ticker);
+  }
+
+  /**
+   * Adds a series to the cache, replacing any series already cached for its ticker and
+   * evicting the least recently used series until it fits. A series larger than the whole
+   * budget is not cached.
+   *
+   * @param series represents the series to cache
+   */
+  public synchronized void put(PriceSeries series) {
+    remove(series.getTicker());
+    long size = series.estimatedBytes();
+    if (size > budgetBytes) {
+      return;
+    }
+
+    Iterator<Map.Entry<String, PriceSeries>> it = entries.entrySet().iterator();
+    while (usedBytes + size > budgetBytes && it.hasNext()) {
+      evict(it);
+    }
+    entries.put(series.getTicker(), series);
+    charged.put(series.getTicker(), size);
+    usedBytes += size;
+  }
+
+  /**
+   * Removes a ticker from the cache.
+   *
+   * @param ticker represents the ticker symbol
+   */
+  public synchronized void remove(String ticker) {
+    if (entries.remove(ticker) != null) {
+      usedBytes -= charged.remove(ticker);
+    }
+  }
+
+  /**
+   * Removes every series from the cache. The counters are kept.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    charged.clear();
+    usedBytes = 0;
+  }
+
+  /**
+   * Gets the tickers currently cached, least recently used first.
+   *
+   * @return a copy of the cached ticker symbols
+   */
+  public synchronized List<String> getTickers() {
+    return new ArrayList<>(entries.keySet());
+  }
+
+  /**
+   * Gets the series currently cached, least recently used first, without counting hits or
+   * changing which series is least recently used.
+   *
+   * @return a copy of the cached series
+   */
+  public synchronized List<PriceSeries> getSeries() {
+    return new ArrayList<>(entries.values());
+  }
+
+  /**
+   * Gets the number of series currently cached.
+   *
+   * @return the number of cached series
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the byte budget of this cache.
+   *
+   * @return the most bytes of price data the cache may hold
+   */
+  public long getBudgetBytes() {
+    return budgetBytes;
+  }
+
+  /**
+   * Gets the estimated bytes of price data currently cached.
+   *
+   * @return the bytes in use
+   */
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * Gets the number of lookups that found a cached series.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of lookups that didn't find a cached series.
+   *
+   * @return the number of misses
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Gets the number of series evicted to stay within the budget.
+   *
+   * @return the number of evictions
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "PriceSeriesCache[" + entries.size() + " series, " + usedBytes + "/"
+            + budgetBytes + " bytes, " + hits + " hits, " + misses + " misses, "
+            + evictions + " evictions]";
+  }
+}
@@ -0,0 +1,387 @@
+package stock;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads and writes a compact binary copy of a {@link PriceSeries}, kept next to the csv it
+ * was parsed from (src/res/IBM.csv is snapshotted to src/res/IBM.prices). Loading a snapshot
+ * is a single pass over a memory-mapped file, which is much faster than parsing the csv.
+ *
+ * <p>A snapshot is a 48 byte header followed by one record per row. Each record holds the
+ * change in epoch day and the change in each price column since the previous row, stored
+ * as fixed-point millionths and written as zig-zag varints, so a typical row takes around
+ * twenty bytes instead of seventy. The header records the size and modification time of
+ * the csv the snapshot was made from and a checksum of the records; a snapshot whose csv
+ * has since changed, whose checksum doesn't match or whose version is unknown is ignored,
+ * and the caller falls back to the csv.
+ *
+ * <p>Because each record only depends on the one before it, newer rows can be appended to
+ * an existing snapshot without rewriting it, and the checksum is carried forward from the
+ * stored value. The header also keeps the day the history was last refreshed from the
+ * web api. Histories that didn't come from a csv are snapshotted too, with no csv recorded.
+ */
+public final class PriceSnapshot {
+  /**
+   * The file extension of snapshot files.
+   */
+  public static final String EXTENSION = ".prices";
+
+  private static final int MAGIC = 0x50534E50; // "PSNP"
+  private static final short VERSION = 2;
+  private static final int HEADER_SIZE = 48;
+  private static final double SCALE = 1_000_000.0;
+  private static final int COLUMNS = 5;
+  // a zig-zag varint of a long takes at least one byte and at most ten
+  private static final int MIN_RECORD_SIZE = COLUMNS + 1;
+  private static final int MAX_RECORD_SIZE = (COLUMNS + 1) * 10;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final long NO_CSV = -1;
+
+  /**
+   * The refresh day recorded for a history that has never been refreshed.
+   */
+  public static final int NEVER_REFRESHED = Integer.MIN_VALUE;
+
+  private PriceSnapshot() {
+  }
+
+  /**
+   * Gets the path of the snapshot kept next to a csv file.
+   *
+   * @param csv represents the csv file
+   * @return the path of its snapshot
+   */
+  public static Path snapshotPath(Path csv) {
+    String name = csv.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return csv.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+  }
+
+  /**
+   * Loads a price history from the snapshot next to a csv file, if there is an up to date
+   * one. When the csv no longer exists the snapshot is used as it is.
+   *
+   * @param ticker represents the ticker symbol of the stock
+   * @param csv    represents the csv file the snapshot was made from
+   * @return the price series, or null if there is no usable snapshot
+   */
+  public static PriceSeries read(String ticker, Path csv) {
+    Path file = snapshotPath(csv);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return null;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION
+              || buffer.getShort(6) != HEADER_SIZE) {
+        return null;
+      }
+      int rows = buffer.getInt(8);
+      long bodyLength = buffer.getLong(16);
+      // the row count isn't covered by the checksum, so it must fit in the body before
+      // the columns are allocated from it
+      if (rows < 0 || bodyLength != channel.size() - HEADER_SIZE
+              || rows > bodyLength / MIN_RECORD_SIZE) {
+        return null;
+      }
+      if (csvChanged(csv, buffer)) {
+        return null;
+      }
+      if (checksum(FNV_OFFSET, buffer, HEADER_SIZE, (int) channel.size())
+              != buffer.getLong(40)) {
+        return null;
+      }
+      buffer.position(HEADER_SIZE);
+      PriceSeries series = decode(ticker, buffer, rows);
+      // records left over mean the row count is wrong
+      return buffer.hasRemaining() ? null : series;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      // a truncated or otherwise damaged snapshot is treated like a missing one
+      return null;
+    }
+  }
+
+  /**
+   * Reads the day a snapshotted history was last refreshed from the web api. A snapshot
+   * whose csv has changed since it was written isn't what a load would return, so it
+   * counts as never refreshed, as does a missing one.
+   *
+   * @param csv represents the csv file the snapshot belongs to
+   * @return the epoch day of the last refresh, or {@link #NEVER_REFRESHED}
+   */
+  public static int readRefreshedDay(Path csv) {
+    try (FileChannel channel = FileChannel.open(snapshotPath(csv), StandardOpenOption.READ)) {
+      ByteBuffer header = readHeader(channel);
+      if (header == null || csvChanged(csv, header)) {
+        return NEVER_REFRESHED;
+      }
+      return header.getInt(12);
+    } catch (IOException e) {
+      return NEVER_REFRESHED;
+    }
+  }
+
+  /**
+   * Writes a snapshot of a price history that has never been refreshed.
+   *
+   * @param series represents the parsed price history
+   * @param csv    represents the csv file it was parsed from
+   * @return true if the snapshot was written
+   * @see #write(PriceSeries, Path, int)
+   */
+  public static boolean write(PriceSeries series, Path csv) {
+    return write(series, csv, NEVER_REFRESHED);
+  }
+
+  /**
+   * Writes a snapshot of a price history next to the csv it was parsed from, or at the
+   * place such a csv would be if the history came from elsewhere. The snapshot is written
+   * to a temporary file first and then moved into place, so a reader never sees half a
+   * snapshot. Nothing is written if a price can't be stored exactly to six decimal places,
+   * since the snapshot would then not match its source.
+   *
+   * @param series       represents the price history
+   * @param csv          represents the csv file it was parsed from
+   * @param refreshedDay represents the epoch day the history was last refreshed
+   * @return true if the snapshot was written
+   */
+  public static boolean write(PriceSeries series, Path csv, int refreshedDay) {
+    int rows = series.size();
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + rows * MAX_RECORD_SIZE);
+    buffer.position(HEADER_SIZE);
+    if (!encode(series, 0, buffer)) {
+      return false;
+    }
+    int end = buffer.position();
+
+    Path file = snapshotPath(csv);
+    try {
+      boolean hasCsv = Files.exists(csv);
+      buffer.putInt(0, MAGIC);
+      buffer.putShort(4, VERSION);
+      buffer.putShort(6, (short) HEADER_SIZE);
+      buffer.putInt(8, rows);
+      buffer.putInt(12, refreshedDay);
+      buffer.putLong(16, end - HEADER_SIZE);
+      buffer.putLong(24, hasCsv ? Files.size(csv) : NO_CSV);
+      buffer.putLong(32, hasCsv ? Files.getLastModifiedTime(csv).toMillis() : NO_CSV);
+      buffer.putLong(40, checksum(FNV_OFFSET, buffer, HEADER_SIZE, end));
+
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.write(temp, Arrays.copyOf(buffer.array(), end));
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (IOException e) {
+      // the snapshot is only a speed-up, so a read-only resource folder is not an error
+      return false;
+    }
+  }
+
+  /**
+   * Appends the newest rows of a history to the snapshot that holds its older rows, and
+   * records the refresh day. Only the new records and the header are written. The records
+   * are written and flushed before the header, so if the program stops in between, the
+   * header no longer matches the file length and the snapshot is ignored on the next load.
+   *
+   * @param series       represents the whole history, whose first previousRows rows are
+   *                     already in the snapshot
+   * @param previousRows represents the number of rows the snapshot holds now
+   * @param csv          represents the csv file the snapshot belongs to
+   * @param refreshedDay represents the epoch day the history was refreshed
+   * @return true if the rows were appended, false if the snapshot doesn't hold exactly
+   *         previousRows rows and has to be rewritten instead
+   */
+  public static boolean append(PriceSeries series, int previousRows, Path csv,
+                               int refreshedDay) {
+    if (previousRows <= 0 || previousRows > series.size()) {
+      return false;
+    }
+    try (FileChannel channel = FileChannel.open(snapshotPath(csv),
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer header = readHeader(channel);
+      if (header == null || header.getInt(8) != previousRows) {
+        return false;
+      }
+      long bodyLength = header.getLong(16);
+
+      ByteBuffer tail = ByteBuffer.allocate((series.size() - previousRows) * MAX_RECORD_SIZE);
+      if (!encode(series, previousRows, tail)) {
+        return false;
+      }
+      int tailLength = tail.position();
+      tail.flip();
+      long hash = checksum(header.getLong(40), tail, 0, tailLength);
+
+      long offset = HEADER_SIZE + bodyLength;
+      while (tail.hasRemaining()) {
+        offset += channel.write(tail, offset);
+      }
+      channel.force(false);
+
+      header.putInt(8, series.size());
+      header.putInt(12, refreshedDay);
+      header.putLong(16, bodyLength + tailLength);
+      header.putLong(40, hash);
+      header.rewind();
+      channel.write(header, 0);
+      channel.force(false);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Helper method that reads and checks the header of a snapshot.
+   *
+   * @return the header, or null if it isn't a snapshot of this version or its length
+   *         doesn't match the file
+   */
+  private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+    if (channel.size() < HEADER_SIZE) {
+      return null;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        return null;
+      }
+    }
+    if (header.getInt(0) != MAGIC || header.getShort(4) != VERSION
+            || header.getShort(6) != HEADER_SIZE
+            || header.getLong(16) != channel.size() - HEADER_SIZE) {
+      return null;
+    }
+    return header;
+  }
+
+  /**
+   * Helper method that checks whether the csv a snapshot was made from exists and differs
+   * in size or modification time from what the snapshot's header recorded.
+   */
+  private static boolean csvChanged(Path csv, ByteBuffer header) throws IOException {
+    return Files.exists(csv) && (Files.size(csv) != header.getLong(24)
+            || Files.getLastModifiedTime(csv).toMillis() != header.getLong(32));
+  }
+
+  /**
+   * Helper method that encodes the rows of a series from the given row onwards. The first
+   * record is a change from the row before it, so records can continue an existing
+   * snapshot.
+   *
+   * @return false if a price can't be stored exactly
+   */
+  private static boolean encode(PriceSeries series, int from, ByteBuffer buffer) {
+    long[] previous = new long[COLUMNS];
+    int previousDay = 0;
+    if (from > 0) {
+      previousDay = series.getEpochDay(from - 1);
+      for (int c = 0; c < COLUMNS; c++) {
+        previous[c] = Math.round(column(series, c, from - 1) * SCALE);
+      }
+    }
+    for (int i = from; i < series.size(); i++) {
+      writeVarLong(buffer, series.getEpochDay(i) - previousDay);
+      previousDay = series.getEpochDay(i);
+      for (int c = 0; c < COLUMNS; c++) {
+        double value = column(series, c, i);
+        long fixed = Math.round(value * SCALE);
+        if (Double.isNaN(value) || fixed / SCALE != value) {
+          return false;
+        }
+        writeVarLong(buffer, fixed - previous[c]);
+        previous[c] = fixed;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Helper method that decodes the records of a snapshot into a price series.
+   */
+  private static PriceSeries decode(String ticker, ByteBuffer buffer, int rows) {
+    int[] days = new int[rows];
+    double[][] columns = new double[COLUMNS][rows];
+    long[] previous = new long[COLUMNS];
+    int previousDay = 0;
+    for (int i = 0; i < rows; i++) {
+      previousDay += (int) readVarLong(buffer);
+      days[i] = previousDay;
+      for (int c = 0; c < COLUMNS; c++) {
+        previous[c] += readVarLong(buffer);
+        columns[c][i] = previous[c] / SCALE;
+      }
+    }
+    return PriceSeries.fromColumns(ticker, rows, days, columns[0], columns[1],
+            columns[2], columns[3], columns[4]);
+  }
+
+  private static double column(PriceSeries series, int column, int index) {
+    switch (column) {
+      case 0:
+        return series.getOpen(index);
+      case 1:
+        return series.getHigh(index);
+      case 2:
+        return series.getLow(index);
+      case 3:
+        return series.getClose(index);
+      default:
+        return series.getVolume(index);
+    }
+  }
+
+  /**
+   * Helper method that writes a signed value as a zig-zag varint: small positive and
+   * negative changes both take a single byte.
+   */
+  private static void writeVarLong(ByteBuffer buffer, long value) {
+    long v = (value << 1) ^ (value >> 63);
+    while ((v & ~0x7FL) != 0) {
+      buffer.put((byte) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    buffer.put((byte) v);
+  }
+
+  private static long readVarLong(ByteBuffer buffer) {
+    long v = 0;
+    int shift = 0;
+    byte b;
+    do {
+      if (shift > 63) {
+        throw new IllegalArgumentException("Malformed varint in price snapshot");
+      }
+      b = buffer.get();
+      v |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  /**
+   * Helper method that continues a 64-bit FNV-1a hash over part of a buffer. Starting
+   * from FNV_OFFSET hashes from scratch; starting from a stored hash extends it.
+   */
+  private static long checksum(long hash, ByteBuffer buffer, int start, int end) {
+    for (int i = start; i < end; i++) {
+      hash ^= buffer.get(i) & 0xFF;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,27 @@
+package stock;
+
+import java.io.IOException;
+
+/**
+ * A place price histories can be loaded from, such as the bundled csv files, their binary
+ * snapshots or the Alpha Vantage web api. Sources can be chained with
+ * {@link ChainedPriceSource} so that cheap local sources are tried before the network.
+ */
+public interface PriceSource {
+
+  /**
+   * Loads the full price history of a ticker.
+   *
+   * @param ticker represents the upper-case ticker symbol
+   * @return the price history, or null if this source doesn't have the ticker
+   * @throws IOException if the source has the ticker but it couldn't be read
+   */
+  PriceSeries load(String ticker) throws IOException;
+
+  /**
+   * Gets a short name for this source, used in messages.
+   *
+   * @return the name of this source
+   */
+  String getName();
+}
@@ -0,0 +1,85 @@
+package stock;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that limits how often something may happen, such as requests to a web api
+ * with a per-minute quota. The bucket holds up to a fixed number of tokens and refills at a
+ * steady rate; each request takes one token and waits if none are left.
+ */
+public class RateLimiter {
+  private final double capacity;
+  private final double tokensPerNano;
+  private double tokens;
+  private long lastRefill;
+
+  /**
+   * Constructs a limiter that allows the given number of requests per period, all of
+   * which may be used at once.
+   *
+   * @param permits represents the number of requests allowed per period
+   * @param period  represents the length of the period
+   * @throws IllegalArgumentException if permits or period isn't positive
+   */
+  public RateLimiter(int permits, Duration period) {
+    if (permits <= 0 || period.isZero() || period.isNegative()) {
+      throw new IllegalArgumentException("A rate limit needs a positive number of "
+              + "requests per positive period");
+    }
+    this.capacity = permits;
+    this.tokensPerNano = permits / (double) period.toNanos();
+    this.tokens = permits;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Takes a token, waiting until one is available.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public void acquire() throws InterruptedException {
+    while (true) {
+      long waitNanos;
+      synchronized (this) {
+        refill();
+        if (tokens >= 1) {
+          tokens -= 1;
+          return;
+        }
+        waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+      }
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Takes a token if one is available right now.
+   *
+   * @return true if a token was taken
+   */
+  public synchronized boolean tryAcquire() {
+    refill();
+    if (tokens >= 1) {
+      tokens -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Gets the number of whole tokens available right now.
+   *
+   * @return the number of requests that could be made without waiting
+   */
+  public synchronized int available() {
+    refill();
+    return (int) tokens;
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+    lastRefill = now;
+  }
+}
@@ -0,0 +1,122 @@
+package stock;
+
+import java.util.Arrays;
+
+/**
+ * Turns a daily price history into weekly, monthly, quarterly and yearly bars. A bar opens
+ * at the open of the first trading day of its period, closes at the close of the last,
+ * spans the highest high and lowest low in between and adds up the volume. Each bar is a
+ * row of an ordinary {@link PriceSeries} dated on the last trading day of its period, so
+ * everything that works on daily rows works on bars too. All four resolutions are built
+ * together in one pass over the daily rows.
+ */
+public final class Resampler {
+
+  /**
+   * The length of time a bar covers. Weeks start on Monday.
+   */
+  public enum Period {
+    WEEKLY, MONTHLY, QUARTERLY, YEARLY
+  }
+
+  private Resampler() {
+  }
+
+  /**
+   * Builds the bars of every period from a daily history.
+   *
+   * @param series represents the daily history
+   * @return the bars, indexed by the ordinal of their period
+   */
+  static PriceSeries[] resampleAll(PriceSeries series) {
+    Period[] periods = Period.values();
+    int n = series.size();
+    int span = n == 0 ? 0 : series.getEpochDay(n - 1) - series.getEpochDay(0);
+    // no period is shorter than these many days, so this many bars is always enough
+    int[] shortest = {7, 28, 90, 365};
+    Bars[] bars = new Bars[periods.length];
+    for (int p = 0; p < periods.length; p++) {
+      bars[p] = new Bars(span / shortest[p] + 2);
+    }
+
+    for (int i = 0; i < n; i++) {
+      int day = series.getEpochDay(i);
+      int month = monthIndex(day);
+      bars[Period.WEEKLY.ordinal()].add(Math.floorDiv(day + 3, 7), series, i);
+      bars[Period.MONTHLY.ordinal()].add(month, series, i);
+      bars[Period.QUARTERLY.ordinal()].add(Math.floorDiv(month, 3), series, i);
+      bars[Period.YEARLY.ordinal()].add(Math.floorDiv(month, 12), series, i);
+    }
+
+    PriceSeries[] result = new PriceSeries[periods.length];
+    for (int p = 0; p < periods.length; p++) {
+      result[p] = bars[p].toSeries(series.getTicker());
+    }
+    return result;
+  }
+
+  /**
+   * Helper method that numbers the month a day falls in, counting year * 12 + month - 1,
+   * without creating a LocalDate. This is the inverse of {@link CsvPriceParser#epochDay}.
+   */
+  static int monthIndex(int epochDay) {
+    int z = epochDay + 719468;
+    int era = Math.floorDiv(z, 146097);
+    int dayOfEra = z - era * 146097;
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    return year * 12 + month - 1;
+  }
+
+  /**
+   * The bars of one period as they are being built.
+   */
+  private static final class Bars {
+    private final int[] days;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+    private int size;
+    private int key;
+
+    private Bars(int capacity) {
+      days = new int[capacity];
+      open = new double[capacity];
+      high = new double[capacity];
+      low = new double[capacity];
+      close = new double[capacity];
+      volume = new double[capacity];
+    }
+
+    /**
+     * Adds a daily row, starting a new bar if it falls in a later period than the last.
+     */
+    private void add(int period, PriceSeries series, int row) {
+      if (size == 0 || period != key) {
+        key = period;
+        open[size] = series.getOpen(row);
+        high[size] = series.getHigh(row);
+        low[size] = series.getLow(row);
+        volume[size] = 0;
+        size++;
+      }
+      int bar = size - 1;
+      days[bar] = series.getEpochDay(row);
+      high[bar] = Math.max(high[bar], series.getHigh(row));
+      low[bar] = Math.min(low[bar], series.getLow(row));
+      close[bar] = series.getClose(row);
+      volume[bar] += series.getVolume(row);
+    }
+
+    private PriceSeries toSeries(String ticker) {
+      return new PriceSeries(ticker, Arrays.copyOf(days, size), Arrays.copyOf(open, size),
+              Arrays.copyOf(high, size), Arrays.copyOf(low, size),
+              Arrays.copyOf(close, size), Arrays.copyOf(volume, size));
+    }
+  }
+}
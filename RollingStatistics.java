@@ -0,0 +1,242 @@
+package stock;
+
+import java.util.Arrays;
+
+/**
+ * Rolling risk statistics of a series of values, such as a stock's closes or a portfolio's
+ * value over time: the annualised volatility and Sharpe ratio of the returns in a window,
+ * and the largest drop from a peak within it. All three are computed for every window end
+ * in one pass. The mean and variance of the returns slide with Welford's method, and the
+ * drawdown slides with a queue built from two stacks that each remember the peak, trough
+ * and worst drop of the values under them, so every step is constant time however wide the
+ * window. Window ends before the first full window are NaN.
+ */
+public final class RollingStatistics {
+  /**
+   * The number of trading days in a year, used to annualise daily statistics.
+   */
+  public static final int TRADING_DAYS_PER_YEAR = 252;
+
+  private final int window;
+  private final double[] volatility;
+  private final double[] sharpe;
+  private final double[] maxDrawdown;
+
+  /**
+   * Computes the statistics of a series of values.
+   *
+   * @param values         represents the values in time order
+   * @param window         represents the number of returns in each window, at least 2
+   * @param periodsPerYear represents how many values make up a year, to annualise with
+   * @param riskFreeRate   represents the yearly risk-free rate the Sharpe ratio is
+   *                       measured against, for example 0.03 for 3%
+   * @throws IllegalArgumentException if the window is less than 2
+   */
+  public RollingStatistics(double[] values, int window, double periodsPerYear,
+                           double riskFreeRate) {
+    if (window < 2) {
+      throw new IllegalArgumentException("The window must be at least 2 days.");
+    }
+    int n = values.length;
+    this.window = window;
+    this.volatility = new double[n];
+    this.sharpe = new double[n];
+    this.maxDrawdown = new double[n];
+    Arrays.fill(volatility, Double.NaN);
+    Arrays.fill(sharpe, Double.NaN);
+    Arrays.fill(maxDrawdown, Double.NaN);
+
+    double annualise = Math.sqrt(periodsPerYear);
+    double riskFree = riskFreeRate / periodsPerYear;
+    double mean = 0;
+    double squares = 0;
+    // the window holds window + 1 values, plus the one added before the oldest is removed
+    DrawdownQueue drawdowns = new DrawdownQueue(window + 2);
+    for (int i = 0; i < n; i++) {
+      drawdowns.add(values[i]);
+      if (i > window) {
+        drawdowns.remove();
+      }
+      if (i == 0) {
+        continue;
+      }
+
+      double r = simpleReturn(values, i);
+      if (i <= window) {
+        double delta = r - mean;
+        mean += delta / i;
+        squares += delta * (r - mean);
+      } else {
+        double leaving = simpleReturn(values, i - window);
+        double oldMean = mean;
+        mean += (r - leaving) / window;
+        squares += (r - leaving) * (r - mean + leaving - oldMean);
+      }
+      if (i < window) {
+        continue;
+      }
+
+      double deviation = Math.sqrt(Math.max(squares, 0) / (window - 1));
+      volatility[i] = deviation * annualise;
+      sharpe[i] = deviation > 0 ? (mean - riskFree) / deviation * annualise : Double.NaN;
+      maxDrawdown[i] = drawdowns.maxDrawdown();
+    }
+  }
+
+  /**
+   * Computes the statistics of a stock's daily closes, against a risk-free rate of zero.
+   *
+   * @param series represents the price history
+   * @param window represents the number of daily returns in each window, at least 2
+   * @return the rolling statistics, one per row of the history
+   */
+  public static RollingStatistics ofCloses(PriceSeries series, int window) {
+    double[] closes = new double[series.size()];
+    for (int i = 0; i < closes.length; i++) {
+      closes[i] = series.getClose(i);
+    }
+    return new RollingStatistics(closes, window, TRADING_DAYS_PER_YEAR, 0);
+  }
+
+  /**
+   * Helper method that gets the return from one value to the next. Nothing can be lost or
+   * gained on nothing, so a return from zero is zero.
+   */
+  private static double simpleReturn(double[] values, int i) {
+    return values[i - 1] > 0 ? values[i] / values[i - 1] - 1 : 0;
+  }
+
+  /**
+   * Gets the number of returns in each window.
+   *
+   * @return the window size
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Gets the number of window ends, which is the number of values.
+   *
+   * @return the number of values
+   */
+  public int size() {
+    return volatility.length;
+  }
+
+  /**
+   * Gets the annualised standard deviation of the returns in the window ending at a value.
+   *
+   * @param index represents the last value of the window
+   * @return the volatility as a fraction, e.g. 0.25 for 25%, or NaN before the first window
+   */
+  public double getVolatility(int index) {
+    return volatility[index];
+  }
+
+  /**
+   * Gets the annualised Sharpe ratio of the returns in the window ending at a value.
+   *
+   * @param index represents the last value of the window
+   * @return the Sharpe ratio, or NaN before the first window or if the returns didn't vary
+   */
+  public double getSharpe(int index) {
+    return sharpe[index];
+  }
+
+  /**
+   * Gets the largest drop from a peak to a later trough within the window ending at a value.
+   *
+   * @param index represents the last value of the window
+   * @return the drawdown as a fraction of the peak, or NaN before the first window
+   */
+  public double getMaxDrawdown(int index) {
+    return maxDrawdown[index];
+  }
+
+  /**
+   * A first-in first-out queue of values that knows the largest drop from an earlier value to
+   * a later one among the values it holds. New values are pushed on a back stack and old ones
+   * popped from a front stack; when the front runs out the back is moved over in one go, so
+   * each value is moved at most once. Each stack entry remembers the peak, trough and worst
+   * drop of itself and every entry beneath it, and the two stacks are combined on a query.
+   */
+  private static final class DrawdownQueue {
+    private final double[] backValue;
+    private final double[] backPeak;
+    private final double[] backTrough;
+    private final double[] backWorst;
+    private final double[] frontPeak;
+    private final double[] frontTrough;
+    private final double[] frontWorst;
+    private int backSize;
+    private int frontSize;
+
+    private DrawdownQueue(int capacity) {
+      backValue = new double[capacity];
+      backPeak = new double[capacity];
+      backTrough = new double[capacity];
+      backWorst = new double[capacity];
+      frontPeak = new double[capacity];
+      frontTrough = new double[capacity];
+      frontWorst = new double[capacity];
+    }
+
+    private void add(double value) {
+      int i = backSize++;
+      backValue[i] = value;
+      if (i == 0) {
+        backPeak[i] = value;
+        backTrough[i] = value;
+        backWorst[i] = 1;
+      } else {
+        // the older values are below, so the new value can only be a trough after them
+        backPeak[i] = Math.max(backPeak[i - 1], value);
+        backTrough[i] = Math.min(backTrough[i - 1], value);
+        backWorst[i] = Math.min(backWorst[i - 1], ratio(value, backPeak[i - 1]));
+      }
+    }
+
+    private void remove() {
+      if (frontSize == 0) {
+        // newest first, so the oldest value ends up on top of the front stack
+        while (backSize > 0) {
+          double value = backValue[--backSize];
+          int i = frontSize++;
+          if (i == 0) {
+            frontPeak[i] = value;
+            frontTrough[i] = value;
+            frontWorst[i] = 1;
+          } else {
+            // the newer values are below, so the new value can only be a peak before them
+            frontPeak[i] = Math.max(frontPeak[i - 1], value);
+            frontTrough[i] = Math.min(frontTrough[i - 1], value);
+            frontWorst[i] = Math.min(frontWorst[i - 1], ratio(frontTrough[i - 1], value));
+          }
+        }
+      }
+      frontSize--;
+    }
+
+    /**
+     * Gets the largest drop from a value to a later one, as a fraction of the earlier value.
+     */
+    private double maxDrawdown() {
+      double worst = 1;
+      if (frontSize > 0) {
+        worst = frontWorst[frontSize - 1];
+      }
+      if (backSize > 0) {
+        worst = Math.min(worst, backWorst[backSize - 1]);
+      }
+      if (frontSize > 0 && backSize > 0) {
+        worst = Math.min(worst, ratio(backTrough[backSize - 1], frontPeak[frontSize - 1]));
+      }
+      return 1 - worst;
+    }
+
+    private static double ratio(double trough, double peak) {
+      return peak > 0 ? trough / peak : 1;
+    }
+  }
+}
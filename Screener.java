@@ -0,0 +1,298 @@
+package stock;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Screens a universe of stocks for the ones meeting a condition on a given day, for example
+ * "close above its 200-day average and 14-day RSI below 30". Each stock is looked at on its
+ * own, so the universe is split across the threads of a fork-join pool and the work grows
+ * with the number of stocks divided by the number of cores. Matches are ranked by a score
+ * the caller chooses.
+ */
+public class Screener {
+  // a leaf of stocks is small enough to balance well and large enough to be worth a task
+  private static final int LEAF_SIZE = 16;
+
+  private final ForkJoinPool pool;
+
+  /**
+   * Constructs a screener that runs on the common fork-join pool.
+   */
+  public Screener() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a screener that runs on the given pool.
+   *
+   * @param pool represents the pool the universe is screened on
+   */
+  public Screener(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Screens price histories already in memory.
+   *
+   * @param universe  represents the histories to screen
+   * @param epochDay  represents the day to screen on; stocks that didn't trade that day are
+   *                  skipped
+   * @param condition represents the condition a stock must meet
+   * @param score     represents how matches are ranked, highest first
+   * @return the matching stocks in order of score
+   */
+  public List<Match> screen(Collection<PriceSeries> universe, int epochDay,
+                            Predicate<Candidate> condition,
+                            ToDoubleFunction<Candidate> score) {
+    InMemoryPriceSource source = new InMemoryPriceSource();
+    for (PriceSeries series : universe) {
+      source.put(series);
+    }
+    return screen(new ArrayList<>(source.getTickers()), source, epochDay, condition, score);
+  }
+
+  /**
+   * Screens every stock with a csv in a directory. Histories are loaded from their snapshots
+   * where possible, on the pool's threads.
+   *
+   * @param directory represents the directory of csv files
+   * @param epochDay  represents the day to screen on; stocks that didn't trade that day are
+   *                  skipped
+   * @param condition represents the condition a stock must meet
+   * @param score     represents how matches are ranked, highest first
+   * @return the matching stocks in order of score
+   * @throws IOException if the directory can't be listed
+   */
+  public List<Match> screen(Path directory, int epochDay, Predicate<Candidate> condition,
+                            ToDoubleFunction<Candidate> score) throws IOException {
+    List<String> tickers = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.csv")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (!name.equals(TickerRegistry.LISTING_FILE)) {
+          tickers.add(name.substring(0, name.length() - ".csv".length()));
+        }
+      }
+    }
+    PriceSource source = new ChainedPriceSource(Arrays.asList(
+            new SnapshotPriceSource(directory), new CsvPriceSource(directory)));
+    return screen(tickers, source, epochDay, condition, score);
+  }
+
+  private List<Match> screen(List<String> tickers, PriceSource source, int epochDay,
+                             Predicate<Candidate> condition,
+                             ToDoubleFunction<Candidate> score) {
+    List<Match> matches = pool.invoke(
+            new Leaf(tickers, 0, tickers.size(), source, epochDay, condition, score));
+    matches.sort(Comparator.comparingDouble(Match::getScore).reversed()
+            .thenComparing(Match::getTicker));
+    return matches;
+  }
+
+  /**
+   * A stock on the day being screened, with the indicators a condition can ask about.
+   * Moving averages come from the history's prefix sums. RSI and EMA are computed on their
+   * own up to the screened day when first asked for, with the same smoothing as
+   * {@link IndicatorEngine}, so they agree with the indicators shown for the stock
+   * elsewhere without building every other indicator too.
+   */
+  public static final class Candidate {
+    private final PriceSeries series;
+    private final int row;
+    private final Map<Integer, Double> emas = new HashMap<>();
+    private Double rsi;
+
+    private Candidate(PriceSeries series, int row) {
+      this.series = series;
+      this.row = row;
+    }
+
+    /**
+     * Gets the ticker symbol of the stock.
+     *
+     * @return the ticker symbol
+     */
+    public String getTicker() {
+      return series.getTicker();
+    }
+
+    /**
+     * Gets the close on the screened day.
+     *
+     * @return the closing price
+     */
+    public double close() {
+      return series.getClose(row);
+    }
+
+    /**
+     * Gets the number of shares traded on the screened day.
+     *
+     * @return the volume
+     */
+    public double volume() {
+      return series.getVolume(row);
+    }
+
+    /**
+     * Gets the x-day simple moving average ending on the screened day.
+     *
+     * @param x represents the number of trading days
+     * @return the average, or NaN if there are fewer than x days of history
+     */
+    public double sma(int x) {
+      if (x <= 0 || row - x + 1 < 0) {
+        return Double.NaN;
+      }
+      double[] prefix = series.closePrefixSums();
+      return (prefix[row + 1] - prefix[row + 1 - x]) / x;
+    }
+
+    /**
+     * Gets the x-day exponential moving average on the screened day.
+     *
+     * @param x represents the number of trading days
+     * @return the average, or NaN if there are fewer than x days of history
+     */
+    public double ema(int x) {
+      if (x <= 0) {
+        return Double.NaN;
+      }
+      return emas.computeIfAbsent(x, period -> IndicatorEngine.emaAt(series, period, row));
+    }
+
+    /**
+     * Gets the 14-day relative strength index on the screened day.
+     *
+     * @return the RSI between 0 and 100, or NaN if there are fewer than 15 days of history
+     */
+    public double rsi() {
+      if (rsi == null) {
+        rsi = IndicatorEngine.rsiAt(series, row);
+      }
+      return rsi;
+    }
+
+    /**
+     * Gets the change of the close over the last x trading days as a fraction.
+     *
+     * @param x represents the number of trading days
+     * @return the relative change, or NaN if there are fewer than x earlier days
+     */
+    public double change(int x) {
+      if (x <= 0 || row - x < 0) {
+        return Double.NaN;
+      }
+      return series.getClose(row) / series.getClose(row - x) - 1;
+    }
+  }
+
+  /**
+   * A stock that met the condition and its score.
+   */
+  public static final class Match {
+    private final String ticker;
+    private final double score;
+
+    private Match(String ticker, double score) {
+      this.ticker = ticker;
+      this.score = score;
+    }
+
+    /**
+     * Gets the ticker symbol of the stock.
+     *
+     * @return the ticker symbol
+     */
+    public String getTicker() {
+      return ticker;
+    }
+
+    /**
+     * Gets the score the stock was ranked by.
+     *
+     * @return the score
+     */
+    public double getScore() {
+      return score;
+    }
+
+    @Override
+    public String toString() {
+      return ticker + " (" + score + ")";
+    }
+  }
+
+  /**
+   * Screens a run of the universe, splitting it in half until it is a single leaf.
+   */
+  private static final class Leaf extends RecursiveTask<List<Match>> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> tickers;
+    private final int from;
+    private final int to;
+    private final PriceSource source;
+    private final int epochDay;
+    private final Predicate<Candidate> condition;
+    private final ToDoubleFunction<Candidate> score;
+
+    private Leaf(List<String> tickers, int from, int to, PriceSource source, int epochDay,
+                 Predicate<Candidate> condition, ToDoubleFunction<Candidate> score) {
+      this.tickers = tickers;
+      this.from = from;
+      this.to = to;
+      this.source = source;
+      this.epochDay = epochDay;
+      this.condition = condition;
+      this.score = score;
+    }
+
+    @Override
+    protected List<Match> compute() {
+      if (to - from > LEAF_SIZE) {
+        int middle = (from + to) >>> 1;
+        Leaf left = new Leaf(tickers, from, middle, source, epochDay, condition, score);
+        Leaf right = new Leaf(tickers, middle, to, source, epochDay, condition, score);
+        left.fork();
+        List<Match> matches = right.compute();
+        matches.addAll(left.join());
+        return matches;
+      }
+
+      List<Match> matches = new ArrayList<>();
+      for (int i = from; i < to; i++) {
+        PriceSeries series;
+        try {
+          series = source.load(tickers.get(i));
+        } catch (IOException e) {
+          // a stock that can't be read can't match
+          continue;
+        }
+        int row = series == null ? -1 : series.indexOf(epochDay);
+        if (row < 0) {
+          continue;
+        }
+        Candidate candidate = new Candidate(series, row);
+        if (condition.test(candidate)) {
+          matches.add(new Match(candidate.getTicker(), score.applyAsDouble(candidate)));
+        }
+      }
+      return matches;
+    }
+  }
+}
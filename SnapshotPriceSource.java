@@ -0,0 +1,31 @@
+package stock;
+
+import java.nio.file.Path;
+
+/**
+ * A price source that loads the binary snapshots written next to csv files in a
+ * directory. A ticker whose snapshot is missing, damaged or older than its csv is
+ * reported as not found, so a chain can fall back to a {@link CsvPriceSource}.
+ */
+public class SnapshotPriceSource implements PriceSource {
+  private final Path directory;
+
+  /**
+   * Constructs a source over the snapshots in a directory.
+   *
+   * @param directory represents the directory holding the csv files and their snapshots
+   */
+  public SnapshotPriceSource(Path directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public PriceSeries load(String ticker) {
+    return PriceSnapshot.read(ticker, directory.resolve(ticker + ".csv"));
+  }
+
+  @Override
+  public String getName() {
+    return "snapshots in " + directory;
+  }
+}
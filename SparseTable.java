@@ -0,0 +1,82 @@
+package stock;
+
+/**
+ * Answers "which row holds the largest (or smallest) value between two rows" in constant
+ * time. Level k of the table holds, for every row, the row of the extreme value among the
+ * 2^k rows starting there, so any range is covered by two overlapping runs from one level.
+ * Building the table takes n log n steps and rows are stored rather than values, which
+ * halves the memory and tells the caller on which day the extreme was reached.
+ */
+final class SparseTable {
+  private final double[] values;
+  private final boolean max;
+  private final int[][] levels;
+
+  /**
+   * Builds a table over a column.
+   *
+   * @param values represents the column; must not be modified afterwards
+   * @param max    represents whether the table finds maxima rather than minima
+   */
+  SparseTable(double[] values, boolean max) {
+    this.values = values;
+    this.max = max;
+    int n = values.length;
+    int depth = n == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(n);
+    this.levels = new int[depth][];
+    if (depth == 0) {
+      return;
+    }
+    int[] first = new int[n];
+    for (int i = 0; i < n; i++) {
+      first[i] = i;
+    }
+    levels[0] = first;
+    for (int k = 1; k < depth; k++) {
+      int[] below = levels[k - 1];
+      int half = 1 << (k - 1);
+      int[] level = new int[n - (1 << k) + 1];
+      for (int i = 0; i < level.length; i++) {
+        level[i] = better(below[i], below[i + half]);
+      }
+      levels[k] = level;
+    }
+  }
+
+  /**
+   * Finds the row of the extreme value between two rows. Ties go to the earlier row.
+   *
+   * @param from represents the first row, inclusive
+   * @param to   represents the last row, inclusive
+   * @return the row of the largest or smallest value in the range
+   * @throws IndexOutOfBoundsException if the range is empty or outside the column
+   */
+  int query(int from, int to) {
+    if (from < 0 || to >= values.length || from > to) {
+      throw new IndexOutOfBoundsException("Rows " + from + " to " + to + " of "
+              + values.length);
+    }
+    int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+    return better(levels[k][from], levels[k][to - (1 << k) + 1]);
+  }
+
+  private int better(int a, int b) {
+    if (max) {
+      return values[b] > values[a] ? b : a;
+    }
+    return values[b] < values[a] ? b : a;
+  }
+
+  /**
+   * Estimates how many bytes of heap the table holds on to, not counting the column.
+   *
+   * @return the approximate size of the table in bytes
+   */
+  long estimatedBytes() {
+    long bytes = 16;
+    for (int[] level : levels) {
+      bytes += 16 + 4L * level.length;
+    }
+    return bytes;
+  }
+}
@@ -2,6 +2,7 @@ package stock;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
@@ -81,6 +82,12 @@ public class StockController implements Controller {
       case 4:
         portfolioBarChart();
         break;
+      case 5:
+        portfolioRiskStatistics();
+        break;
+      case 6:
+        portfolioBatchValue();
+        break;
       case 9:
         start();
         break;
@@ -282,10 +289,12 @@ public class StockController implements Controller {
       view.getEndDate(a);
       String endDate = in.next();
       double gainLoss = model.calculateGainLoss(endDate, initialDate);
+      double percent = model.calculateGainLoss(endDate, initialDate, true);
+      String change = gainLoss + String.format(" (%+.2f%%)", percent);
       if (gainLoss > 0) {
-        view.displayResult("Gain from " + initialDate + " to " + endDate + ": " + gainLoss, a);
+        view.displayResult("Gain from " + initialDate + " to " + endDate + ": " + change, a);
       } else {
-        view.displayResult("Loss from " + initialDate + " to " + endDate + ": " + gainLoss, a);
+        view.displayResult("Loss from " + initialDate + " to " + endDate + ": " + change, a);
       }
     } catch (Exception e) {
       view.displayError(e.getMessage(), a);
@@ -340,6 +349,93 @@ public class StockController implements Controller {
     this.start();
   }
 
+  /**
+   * Helper method to prompt the user to calculate the
+   * technical indicators of a stock on a date.
+   */
+  private void handleIndicators() {
+    try {
+      view.getDate(a);
+      String date = in.next();
+      view.getXValue(a);
+      int x = in.nextInt();
+      StringBuilder result = new StringBuilder();
+      result.append("Technical indicators for ").append(date).append(":");
+      appendStatistics(result, model.calculateIndicators(date, x));
+      view.displayResult(result.toString(), a);
+    } catch (Exception e) {
+      view.displayError(e.getMessage(), a);
+    }
+
+    this.start();
+  }
+
+  /**
+   * Helper method to prompt the user to calculate the
+   * risk statistics of a stock over a window of days.
+   */
+  private void handleRiskStatistics() {
+    try {
+      view.getDate(a);
+      String date = in.next();
+      view.getXValue(a);
+      int x = in.nextInt();
+      StringBuilder result = new StringBuilder();
+      result.append(x).append("-day risk statistics to ").append(date).append(":");
+      appendStatistics(result, model.calculateRiskStatistics(date, x));
+      view.displayResult(result.toString(), a);
+    } catch (Exception e) {
+      view.displayError(e.getMessage(), a);
+    }
+
+    this.start();
+  }
+
+  /**
+   * Helper method to prompt the user to calculate the
+   * change of a stock over each week, month, quarter or
+   * year of a date range.
+   */
+  private void handlePeriodReturns() {
+    try {
+      view.getInitialDate(a);
+      String startDate = in.next();
+      view.getEndDate(a);
+      String endDate = in.next();
+      view.getPeriod(a);
+      String period = in.next();
+      Resampler.Period length;
+      try {
+        length = Resampler.Period.valueOf(period.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid period.");
+      }
+      StringBuilder result = new StringBuilder();
+      result.append("Change (%) per ").append(period.toLowerCase()).append(" period from ")
+              .append(startDate).append(" to ").append(endDate).append(":");
+      appendStatistics(result, model.calculatePeriodReturns(startDate, endDate, length));
+      view.displayResult(result.toString(), a);
+    } catch (Exception e) {
+      view.displayError(e.getMessage(), a);
+    }
+
+    this.start();
+  }
+
+  /**
+   * Helper method that adds named statistics to a result, one per line.
+   */
+  private void appendStatistics(StringBuilder result, Map<String, Double> statistics) {
+    for (Map.Entry<String, Double> entry : statistics.entrySet()) {
+      result.append("\n").append(entry.getKey()).append(": ");
+      if (Double.isNaN(entry.getValue())) {
+        result.append("not enough data");
+      } else {
+        result.append(String.format("%.4f", entry.getValue()));
+      }
+    }
+  }
+
   /**
    * Helper method to prompt the user to
    * get the correct csv file.
@@ -368,6 +464,15 @@ public class StockController implements Controller {
       case 3:
         handleCrossovers();
         break;
+      case 4:
+        handleIndicators();
+        break;
+      case 5:
+        handleRiskStatistics();
+        break;
+      case 6:
+        handlePeriodReturns();
+        break;
       case 9:
         start();
         break;
@@ -402,6 +507,89 @@ public class StockController implements Controller {
 
   }
 
+  /**
+   * Helper method that shows the risk statistics of a
+   * portfolio's value over time, for windows of x of the
+   * points the bar chart would show.
+   */
+  private void portfolioRiskStatistics() {
+    try {
+      view.getName(a);
+      String name = in.next();
+      BetterPortfolio portfolio = model.getBetterPortfolio(name);
+      view.getInitialDate(a);
+      String startDate = in.next();
+      view.getEndDate(a);
+      String endDate = in.next();
+      view.getXValue(a);
+      int x = in.nextInt();
+
+      Map<LocalDate, Double> data = model.calculatePerformance(portfolio, startDate, endDate);
+      RollingStatistics statistics = model.calculateRollingRisk(data, x);
+      StringBuilder result = new StringBuilder();
+      result.append("Risk statistics of ").append(name).append(" over windows of ")
+              .append(x).append(" points:");
+      int i = 0;
+      for (LocalDate date : data.keySet()) {
+        if (i >= x) {
+          result.append(String.format("%n%s  volatility %.2f%%  Sharpe %.2f  "
+                          + "max drawdown %.2f%%", date, statistics.getVolatility(i) * 100,
+                  statistics.getSharpe(i), statistics.getMaxDrawdown(i) * 100));
+        }
+        i++;
+      }
+      if (i <= x) {
+        result.append("\nnot enough data");
+      }
+      view.displayResult(result.toString(), a);
+    } catch (Exception e) {
+      view.displayError(e.getMessage(), a);
+    }
+
+    this.start();
+  }
+
+  /**
+   * Helper method that values several portfolios on
+   * several dates at once and shows how fast it went.
+   */
+  private void portfolioBatchValue() {
+    try {
+      view.getNames(a);
+      List<String> names = Arrays.asList(in.next().split(","));
+      view.getDates(a);
+      List<String> dates = Arrays.asList(in.next().split(","));
+
+      BatchValuation batch = model.valueBatch(names, dates);
+      StringBuilder result = new StringBuilder();
+      result.append("Portfolio");
+      for (LocalDate date : batch.getDates()) {
+        result.append("  ").append(date);
+      }
+      for (int i = 0; i < batch.getNames().size(); i++) {
+        result.append("\n").append(batch.getNames().get(i));
+        for (int j = 0; j < batch.getDates().size(); j++) {
+          double value = batch.getValue(i, j);
+          result.append("  ").append(Double.isNaN(value)
+                  ? "no data" : String.format("%.2f", value));
+        }
+      }
+      for (int i = 0; i < batch.getNames().size(); i++) {
+        if (batch.getError(i) != null) {
+          result.append("\n").append(batch.getNames().get(i)).append(": ")
+                  .append(batch.getError(i));
+        }
+      }
+      result.append(String.format("%nValued %d portfolios in %.1f ms (%.0f portfolios/sec)",
+              batch.getNames().size(), batch.getElapsedNanos() / 1e6, batch.getThroughput()));
+      view.displayResult(result.toString(), a);
+    } catch (Exception e) {
+      view.displayError(e.getMessage(), a);
+    }
+
+    this.start();
+  }
+
   /**
    * Helper method that gets the composition
    * of a portfolio.
@@ -4,26 +4,32 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -40,27 +46,95 @@ import javax.xml.transform.stream.StreamResult;
  * removing a stock, and adding a portfolio.
  */
 public class StockModel implements Model {
-  private List<String> dates;
-  private List<String> closePrice;
-  private String oldestDate;
-  private String mostRecentDate;
-  private List<BetterPortfolio> betterProfile;
-  private boolean isUrl;
+  private static final int FETCH_THREADS = 8;
+  private static final int INDICATOR_ENGINES = 16;
+  private static final int COVARIANCE_MATRICES = 8;
+
+  private PriceSeries series;
+  private final PriceSeriesCache priceCache;
+  private final PriceRefresher priceRefresher;
+  private final PriceFetcher priceFetcher;
+  private final TickerRegistry tickerRegistry;
+  private final Map<String, IndicatorEngine> indicatorEngines;
+  private final Screener screener;
+  private final Map<String, CovarianceEntry> covariances;
+  private final PortfolioRegistry betterProfile;
   private Document doc;
 
-  private static StockModel instance;
-
   /**
    * Constructs the stock model.
    * Doesn't take in any parameters and initializes fields
    */
   public StockModel() {
-    dates = new ArrayList<>();
-    closePrice = new ArrayList<>();
-    oldestDate = "";
-    mostRecentDate = "";
-    isUrl = true;
-    betterProfile = new ArrayList<>();
+    this(PriceSeriesCache.DEFAULT_BUDGET_BYTES);
+  }
+
+  /**
+   * Constructs the stock model with a price cache of the given size.
+   *
+   * @param cacheBudgetBytes represents the most bytes of price history to keep in memory
+   */
+  public StockModel(long cacheBudgetBytes) {
+    this(defaultPriceSource(), cacheBudgetBytes);
+  }
+
+  /**
+   * Constructs the stock model that loads prices from the given source.
+   *
+   * @param priceSource      represents where price histories are loaded from
+   * @param cacheBudgetBytes represents the most bytes of price history to keep in memory
+   */
+  public StockModel(PriceSource priceSource, long cacheBudgetBytes) {
+    this(priceSource, new PriceRefresher(new HttpPriceSource(), Paths.get("src/res")),
+            cacheBudgetBytes);
+  }
+
+  /**
+   * Constructs the stock model that loads prices from the given source and
+   * brings them up to date with the given refresher.
+   *
+   * @param priceSource      represents where price histories are loaded from
+   * @param priceRefresher   represents how loaded histories are brought up to date
+   * @param cacheBudgetBytes represents the most bytes of price history to keep in memory
+   */
+  public StockModel(PriceSource priceSource, PriceRefresher priceRefresher,
+                    long cacheBudgetBytes) {
+    this(priceSource, priceRefresher,
+            new TickerRegistry(new HttpPriceSource(), Paths.get("src/res")), cacheBudgetBytes);
+  }
+
+  /**
+   * Constructs the stock model that loads prices from the given source, brings
+   * them up to date with the given refresher and checks ticker symbols against
+   * the given registry.
+   *
+   * @param priceSource      represents where price histories are loaded from
+   * @param priceRefresher   represents how loaded histories are brought up to date
+   * @param tickerRegistry   represents the ticker symbols known to exist
+   * @param cacheBudgetBytes represents the most bytes of price history to keep in memory
+   */
+  public StockModel(PriceSource priceSource, PriceRefresher priceRefresher,
+                    TickerRegistry tickerRegistry, long cacheBudgetBytes) {
+    series = PriceSeries.empty("");
+    priceCache = new PriceSeriesCache(cacheBudgetBytes);
+    this.priceRefresher = priceRefresher;
+    this.priceFetcher = new PriceFetcher(priceSource, FETCH_THREADS);
+    this.tickerRegistry = tickerRegistry;
+    this.screener = new Screener();
+    this.covariances = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CovarianceEntry> eldest) {
+        return size() > COVARIANCE_MATRICES;
+      }
+    };
+    // access order, so the engine of the stock looked at longest ago is dropped first
+    this.indicatorEngines = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, IndicatorEngine> eldest) {
+        return size() > INDICATOR_ENGINES;
+      }
+    };
+    betterProfile = new PortfolioRegistry();
     this.doc = createDocument();
   }
 
@@ -68,26 +142,23 @@ public class StockModel implements Model {
   /**
    * Method to read the file of the given ticker symbol
    * and return a newStockModel with the statistics of
-   * the corresponding ticket symbol.
+   * the corresponding ticket symbol. A binary snapshot of the
+   * file is written after the first parse and used instead of
+   * the csv until the csv changes.
    *
    * @param symbol represents the inputted ticker symbol
    */
   public void readFile(String symbol) {
-    String file = getExistingStock(symbol);
-    try (BufferedReader br = new BufferedReader
-            (new FileReader(file))) {
-      String line = "";
-      line = br.readLine();
-      dates = new ArrayList<>();
-      closePrice = new ArrayList<>();
-      while ((line = br.readLine()) != null) {
-        String[] data = line.split(",");
-        dates.add(data[0]);
-        closePrice.add(data[4]);
-        oldestDate = dates.get(dates.size() - 1);
-        mostRecentDate = dates.get(0);
-      }
-    } catch (FileNotFoundException ex) {
+    Path file = Paths.get(getExistingStock(symbol));
+    PriceSeries snapshot = PriceSnapshot.read(symbol, file);
+    if (snapshot != null) {
+      series = snapshot;
+      return;
+    }
+    try {
+      series = CsvPriceParser.parse(symbol, file);
+      PriceSnapshot.write(series, file);
+    } catch (NoSuchFileException ex) {
       throw new IllegalArgumentException("File not found." +
               " Check spacing or ticker symbol");
     } catch (IOException ex) {
@@ -96,87 +167,190 @@ public class StockModel implements Model {
   }
 
   /**
-   * Helper method that retrieves an alpha vantage url
-   * given a stock symbol.
+   * Helper method that builds the default chain of price sources: the binary
+   * snapshots in the resource folder, then the csv files there, and only then
+   * the Alpha Vantage web api.
    *
-   * @param symbol represents a ticker symbol of a stock
-   * @return a URL to download a csv
+   * @return the default price source
    */
-  private URL getUrlStock(String symbol) {
-    String apiKey = "ASDIVE6SCAN0YYZO";
-    URL url = null;
-
-    try {
-      /*
-      create the URL. This is the query to the web service.
-       The query string includes the type of query
-       (DAILY stock prices), stock symbol to be looked up,
-        the API key and the format of the returned data
-        (comma-separated values:csv). This service also
-        supports JSON which you are welcome to use.
-       */
-      url = new URL("https://www.alphavantage"
-              + ".co/query?function=TIME_SERIES_DAILY"
-              + "&outputsize=full"
-              + "&symbol"
-              + "=" + symbol + "&apikey=" + apiKey + "&datatype=csv");
-    } catch (MalformedURLException e) {
-      System.out.println("Malformed URL but using downloaded version instead.");
-      isUrl = false;
-      //this.readFile(symbol);
-    }
-    return url;
+  private static PriceSource defaultPriceSource() {
+    Path resources = Paths.get("src/res");
+    return new ChainedPriceSource(List.of(new SnapshotPriceSource(resources),
+            new CsvPriceSource(resources), new HttpPriceSource()));
   }
 
   @Override
   public void readURLFile(String symbol) throws IllegalArgumentException {
-    StringBuilder output = new StringBuilder();
-    URL url = this.getUrlStock(symbol);
-    dates = new ArrayList<>();
-    closePrice = new ArrayList<>();
-
-    try (InputStream in = url.openStream();
-         BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
-      String line;
-      boolean isFirstLine = true;
-      while ((line = reader.readLine()) != null) {
-        if (isFirstLine) {
-          isFirstLine = false;
-          continue; // Skip the header line
-        }
-        output.append(line).append("\n");
-        String[] data = line.split(",");
-        dates.add(data[0]);
-        closePrice.add(data[4]);
-        oldestDate = dates.get(dates.size() - 1);
-        mostRecentDate = dates.get(0);
-      }
-    } catch (IOException e) {
+    String ticker = symbol.toUpperCase();
+    PriceSeries cached = priceCache.get(ticker);
+    if (cached != null) {
+      series = cached;
+      return;
+    }
+
+    PriceSeries loaded;
+    try {
+      loaded = priceFetcher.fetch(ticker, PriceFetcher.Priority.INTERACTIVE).join();
+    } catch (CompletionException e) {
+      loaded = null;
+    }
+    if (loaded == null) {
       throw new IllegalArgumentException("No price data " +
               "found for " + symbol);
     }
+    priceCache.put(loaded);
+    tickerRegistry.add(loaded.getTicker());
+    series = loaded;
   }
 
   @Override
   public void removeStock(String name, String ticker, double shares, String date)
           throws IllegalArgumentException {
-    boolean valid = false;
     if (betterProfile.isEmpty()) {
       throw new IllegalArgumentException("Cannot remove stock "
               + "from portfolio with no stocks");
     }
 
-    for (BetterPortfolio bp : betterProfile) {    //for each portfolio in the profile
-      if (bp.getName().equals(name)) {    //get to correct portfolio that user asks for
-        bp.removeFromPortfolio(ticker, shares, date);
-        valid = true;
+    BetterPortfolio bp = betterProfile.get(name);
+    if (bp == null) {
+      // should throw an exception that the stock isn't in any portfolio
+      throw new IllegalArgumentException("This stock isn't in any of the portfolios");
+    }
+    bp.removeFromPortfolio(ticker, shares, date);
+  }
+
+  /**
+   * Helper method that loads every given ticker that isn't cached yet at the
+   * same time, so the stocks of a portfolio are fetched in parallel rather
+   * than one after another. Tickers that can't be loaded are left out of the
+   * cache, and reading them afterwards reports the problem as before.
+   *
+   * @param symbols represents the ticker symbols to load
+   * @return the histories that could be loaded, by upper case ticker; unlike the
+   *         cache, these can't be evicted while the caller uses them
+   */
+  private Map<String, PriceSeries> loadAll(Collection<String> symbols) {
+    Map<String, PriceSeries> histories = new HashMap<>();
+    Set<String> missing = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      String ticker = symbol.toUpperCase();
+      PriceSeries cached = priceCache.get(ticker);
+      if (cached != null) {
+        histories.put(ticker, cached);
+      } else {
+        missing.add(ticker);
       }
     }
+    if (missing.isEmpty()) {
+      return histories;
+    }
 
-    if (!valid) {
-      // should throw an exception that the stock isn't in any portfolio
-      throw new IllegalArgumentException("This stock isn't in any of the portfolios");
+    for (Map.Entry<String, CompletableFuture<PriceSeries>> fetch
+            : priceFetcher.fetchAll(missing, PriceFetcher.Priority.INTERACTIVE).entrySet()) {
+      try {
+        PriceSeries loaded = fetch.getValue().join();
+        if (loaded != null) {
+          priceCache.put(loaded);
+          tickerRegistry.add(loaded.getTicker());
+          histories.put(fetch.getKey(), loaded);
+        }
+      } catch (CompletionException e) {
+        // reported when the ticker is read
+      }
+    }
+    return histories;
+  }
+
+  /**
+   * Helper method that gets the distinct ticker symbols of a portfolio's stocks.
+   *
+   * @param portfolio represents the portfolio
+   * @return the ticker symbols, in the order they first appear
+   */
+  private Set<String> tickersOf(BetterPortfolio portfolio) {
+    Set<String> tickers = new LinkedHashSet<>();
+    for (Stock stock : portfolio.getStocks()) {
+      tickers.add(stock.getTicker());
+    }
+    return tickers;
+  }
+
+  /**
+   * Starts loading the given tickers in the background, behind anything the
+   * user is waiting for, so they are already cached when they are needed.
+   *
+   * @param symbols represents the ticker symbols to load
+   */
+  public void warmUp(Collection<String> symbols) {
+    for (String symbol : symbols) {
+      String ticker = symbol.toUpperCase();
+      if (!priceCache.contains(ticker)) {
+        priceFetcher.fetch(ticker, PriceFetcher.Priority.BACKGROUND)
+                .thenAccept(loaded -> {
+                  if (loaded != null) {
+                    priceCache.put(loaded);
+                    tickerRegistry.add(loaded.getTicker());
+                  }
+                });
+      }
+    }
+  }
+
+  @Override
+  public void refreshPrices(String symbol) throws IllegalArgumentException {
+    String ticker = symbol.toUpperCase();
+    if (!priceRefresher.isStale(ticker)) {
+      // already refreshed today, so the history held is as new as it gets
+      readURLFile(ticker);
+      return;
     }
+
+    try {
+      // only what is held locally, so a ticker we don't have costs one full download
+      // in the refresh rather than a download here and a recent-prices request there
+      PriceSeries current = priceCache.get(ticker);
+      if (current == null) {
+        current = priceRefresher.loadLocal(ticker);
+      }
+      PriceSeries refreshed = priceRefresher.refresh(current);
+      if (refreshed.isEmpty()) {
+        throw new IllegalArgumentException("No price data found for " + symbol);
+      }
+      priceCache.put(refreshed);
+      tickerRegistry.add(refreshed.getTicker());
+      series = refreshed;
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not refresh prices for " + symbol);
+    }
+  }
+
+  /**
+   * Gets the cache of price histories this model has loaded, so its
+   * size and hit/miss/eviction counters can be inspected.
+   *
+   * @return the price cache
+   */
+  public PriceSeriesCache getPriceCache() {
+    return priceCache;
+  }
+
+  /**
+   * Gets the fetcher that loads price histories for this model, so its
+   * load and coalescing counters can be inspected.
+   *
+   * @return the price fetcher
+   */
+  public PriceFetcher getPriceFetcher() {
+    return priceFetcher;
+  }
+
+  /**
+   * Gets the registry of ticker symbols this model knows to exist.
+   *
+   * @return the ticker registry
+   */
+  public TickerRegistry getTickerRegistry() {
+    return tickerRegistry;
   }
 
   /**
@@ -193,25 +367,27 @@ public class StockModel implements Model {
 
   @Override
   public boolean dateExists(String date) {
-    return dates.contains(date);
-  }
-
-  /**
-   * Getter method to return the field of the oldestDate.
-   *
-   * @return the oldest date as a string value
-   */
-  private String getOldestDate() {
-    return oldestDate;
+    try {
+      return series.indexOf(toEpochDay(date)) >= 0;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
   }
 
   /**
-   * Getter method to return the field of the mostRecentDate.
+   * Helper method that converts a yyyy-MM-dd date to the
+   * number of days since 1970-01-01.
    *
-   * @return the most recent date as a string value
+   * @param date represents the date to convert
+   * @return the epoch day of the date
+   * @throws IllegalArgumentException if the date isn't formatted correctly
    */
-  private String getMostRecentDate() {
-    return mostRecentDate;
+  private int toEpochDay(String date) throws IllegalArgumentException {
+    try {
+      return (int) LocalDate.parse(date).toEpochDay();
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid date format. Please use yyyy-MM-dd.");
+    }
   }
 
   /**
@@ -222,103 +398,330 @@ public class StockModel implements Model {
    * @throws IllegalArgumentException if the date isn't available
    */
   public int getDate(String date) throws IllegalArgumentException {
-    if (dateExists(date)) {
-      for (int i = 0; i < dates.size(); i++) {
-        if (dates.get(i).equals(date)) {
-          return i;
-        }
-      }
-    }
-    if (date.compareTo(getOldestDate()) < 0 || date.compareTo(getMostRecentDate()) > 0) {
+    int day = toEpochDay(date);
+    if (series.isEmpty() || day < series.getEpochDay(0)
+            || day > series.getEpochDay(series.size() - 1)) {
       throw new IllegalArgumentException("Our stock does not support this date");
     }
-    return -1;
+    return series.indexOf(day);
   }
 
   @Override
   public double getClosePrice(int index) {
-    return Double.parseDouble(closePrice.get(index));
+    return series.getClose(index);
   }
 
   @Override
   public double getValue(String name, String date) {
-    double totalValue = 0.0;
-    BetterPortfolio portfolio = getBetterPortfolio(name);
-    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-    // Calculate the value of the portfolio for all stocks on this date
-    for (Stock stock : portfolio.getStocks()) {
-      readURLFile(stock.getTicker());
-      double sharesHeld = portfolio.getValidShares(stock.getTicker(), date);
-      int index;
+    LocalDate day;
+    try {
+      day = LocalDate.parse(date);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid date format. Please use yyyy-MM-dd.");
+    }
+    return valueOn(getBetterPortfolio(name), List.of(day))[0];
+  }
 
-      //if the date is not available, get the value of the stock at the previous known date
-      if (getDate(date) == -1) {
-        index = getPreviousValidDate(LocalDate.parse(date, formatter));
-      } else {
-        index = getDate(date);
+  /**
+   * Helper method that values a portfolio on several dates in one sweep, loading
+   * the history of each of its stocks once.
+   *
+   * @param portfolio represents the portfolio
+   * @param dates     represents the dates
+   * @return the value on each date, in the order of the dates
+   * @throws IllegalArgumentException if a stock has no price data, or shares are held
+   *                                  on a date outside its history
+   */
+  private double[] valueOn(BetterPortfolio portfolio, List<LocalDate> dates) {
+    Map<String, PriceSeries> histories = loadAll(tickersOf(portfolio));
+    return new PortfolioValuation(dates).value(portfolio.getLedger(), ticker -> {
+      PriceSeries history = histories.get(ticker.toUpperCase());
+      if (history == null) {
+        throw new IllegalArgumentException("No price data found for " + ticker);
       }
-
-      double stockPrice = getClosePrice(index);
-
-
-      totalValue += sharesHeld * stockPrice;
-    }
-    return totalValue;
+      return history;
+    });
   }
 
   @Override
   public double calculateGainLoss(String recent, String initial) {
-    return getClosePrice(getDate(recent)) - getClosePrice(getDate(initial));
+    return calculateGainLoss(recent, initial, false);
   }
 
   @Override
-  public double calculateMovingAverage(String date, int x) {
-    double sum = 0;
-    if (isUrl) {
-      if (getDate(date) - x + 1 < 0) {
-        throw new IllegalArgumentException("Not enough data to calculate the moving average.");
-      }
-      for (int i = getDate(date); i >= getDate(date) - x + 1; i--) {
-        sum += getClosePrice(i);
-      }
-      return sum / x;
-    } else {
-      if (getDate(date) + x + 1 >= dates.size()) {
-        throw new IllegalArgumentException("Not enough data to calculate the moving average.");
-      }
-      for (int i = getDate(date); i <= getDate(date) + x + 1; i++) {
-        sum += getClosePrice(i);
-      }
-      return sum / x;
+  public double calculateGainLoss(String recent, String initial, boolean percent) {
+    if (!percent) {
+      return getClosePrice(getDate(recent)) - getClosePrice(getDate(initial));
     }
+    return series.returnBetween(tradingDay(initial), tradingDay(recent)) * 100;
+  }
+
+  @Override
+  public double calculateMovingAverage(String date, int x) {
+    return MovingAverages.simple(series, getDate(date), x);
   }
 
   @Override
   public List<String> findCrossovers(String startDate, String endDate, int x) {
-    List<String> result = new ArrayList<>();
     int startIdx = getDate(startDate);
     int endIdx = getDate(endDate);
 
     if (endIdx < 0) {
       throw new IllegalArgumentException("Date range exceeds available data.");
     }
+    return MovingAverages.crossovers(series, startIdx, endIdx, x);
+  }
 
-    for (int i = startIdx; i <= endIdx; i++) {
-      if (i - x + 1 < 0) {
-        throw new IllegalArgumentException("Not enough data to calculate the moving average.");
-      }
-      double sum = 0;
-      for (int j = i; j >= i - x + 1; j--) {
-        sum += getClosePrice(j);
+  @Override
+  public Iterator<CrossDetector.Event> findCrossEvents(String startDate, String endDate,
+                                                       int fast, int slow)
+          throws IllegalArgumentException {
+    int startIdx = tradingDay(startDate);
+    int endIdx = tradingDay(endDate);
+    if (startIdx > endIdx) {
+      throw new IllegalArgumentException("The start date must be before the end date.");
+    }
+    return CrossDetector.scan(series, startIdx, endIdx, fast, slow);
+  }
+
+  @Override
+  public Map<String, Double> calculateIndicators(String date, int x)
+          throws IllegalArgumentException {
+    int index = tradingDay(date);
+    IndicatorEngine engine = indicatorEngine(x);
+
+    Map<String, Double> result = new LinkedHashMap<>();
+    result.put(x + "-day EMA", engine.get(IndicatorEngine.Indicator.EMA, index));
+    result.put("RSI (" + IndicatorEngine.RSI_PERIOD + ")",
+            engine.get(IndicatorEngine.Indicator.RSI, index));
+    result.put("MACD (" + IndicatorEngine.MACD_FAST + ", " + IndicatorEngine.MACD_SLOW + ")",
+            engine.get(IndicatorEngine.Indicator.MACD, index));
+    result.put("MACD signal (" + IndicatorEngine.MACD_SIGNAL + ")",
+            engine.get(IndicatorEngine.Indicator.MACD_SIGNAL, index));
+    result.put("MACD histogram", engine.get(IndicatorEngine.Indicator.MACD_HISTOGRAM, index));
+    result.put("Bollinger upper band", engine.get(IndicatorEngine.Indicator.BOLLINGER_UPPER,
+            index));
+    result.put("Bollinger middle band (" + IndicatorEngine.BOLLINGER_PERIOD + ")",
+            engine.get(IndicatorEngine.Indicator.BOLLINGER_MIDDLE, index));
+    result.put("Bollinger lower band", engine.get(IndicatorEngine.Indicator.BOLLINGER_LOWER,
+            index));
+    result.put("ATR (" + IndicatorEngine.ATR_PERIOD + ")",
+            engine.get(IndicatorEngine.Indicator.ATR, index));
+    return result;
+  }
+
+  /**
+   * Screens every stock in the price cache on a date, in parallel, for the
+   * ones meeting a condition, for example
+   * {@code c -> c.close() > c.sma(200) && c.rsi() < 30}.
+   *
+   * @param date      represents the date to screen on
+   * @param condition represents the condition a stock must meet
+   * @param score     represents how matches are ranked, highest first
+   * @return the matching stocks in order of score
+   * @throws IllegalArgumentException if the date isn't in yyyy-MM-dd format
+   */
+  public List<Screener.Match> screen(String date, Predicate<Screener.Candidate> condition,
+                                     ToDoubleFunction<Screener.Candidate> score)
+          throws IllegalArgumentException {
+    return screener.screen(priceCache.getSeries(), toEpochDay(date), condition, score);
+  }
+
+  @Override
+  public double getHighestHigh(String startDate, String endDate)
+          throws IllegalArgumentException {
+    int from = tradingDay(startDate);
+    int to = tradingDay(endDate);
+    if (from > to) {
+      throw new IllegalArgumentException("The start date must not be after the end date.");
+    }
+    return series.getHigh(series.highestHighIndex(from, to));
+  }
+
+  @Override
+  public double getLowestLow(String startDate, String endDate)
+          throws IllegalArgumentException {
+    int from = tradingDay(startDate);
+    int to = tradingDay(endDate);
+    if (from > to) {
+      throw new IllegalArgumentException("The start date must not be after the end date.");
+    }
+    return series.getLow(series.lowestLowIndex(from, to));
+  }
+
+  @Override
+  public double get52WeekHigh(String date) throws IllegalArgumentException {
+    int to = tradingDay(date);
+    return series.getHigh(series.highestHighIndex(yearBefore(to), to));
+  }
+
+  @Override
+  public double get52WeekLow(String date) throws IllegalArgumentException {
+    int to = tradingDay(date);
+    return series.getLow(series.lowestLowIndex(yearBefore(to), to));
+  }
+
+  @Override
+  public double calculateDrawdown(String date) throws IllegalArgumentException {
+    int to = tradingDay(date);
+    double peak = series.getClose(series.highestCloseIndex(0, to));
+    return (peak - series.getClose(to)) / peak * 100;
+  }
+
+  @Override
+  public Map<String, Double> calculatePeriodReturns(String startDate, String endDate,
+                                                    Resampler.Period period)
+          throws IllegalArgumentException {
+    int start;
+    int end;
+    try {
+      start = (int) LocalDate.parse(startDate).toEpochDay();
+      end = (int) LocalDate.parse(endDate).toEpochDay();
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid date format. Please use yyyy-MM-dd.");
+    }
+    if (end < start) {
+      throw new IllegalArgumentException("The start date must be before the end date.");
+    }
+
+    PriceSeries bars = series.getBars(period);
+    Map<String, Double> result = new LinkedHashMap<>();
+    for (int i = bars.floorIndex(start - 1) + 1; i <= bars.floorIndex(end); i++) {
+      result.put(bars.getDate(i), bars.getReturn(i) * 100);
+    }
+    return result;
+  }
+
+  @Override
+  public Map<String, Double> calculateRiskStatistics(String date, int x)
+          throws IllegalArgumentException {
+    int index = tradingDay(date);
+    // the history is only needed up to the date
+    int from = Math.max(0, index - x);
+    double[] closes = new double[index - from + 1];
+    for (int i = from; i <= index; i++) {
+      closes[i - from] = series.getClose(i);
+    }
+    RollingStatistics statistics = new RollingStatistics(closes, x,
+            RollingStatistics.TRADING_DAYS_PER_YEAR, 0);
+    int last = closes.length - 1;
+
+    Map<String, Double> result = new LinkedHashMap<>();
+    result.put("Annualised volatility (%)", statistics.getVolatility(last) * 100);
+    result.put("Sharpe ratio", statistics.getSharpe(last));
+    result.put("Max drawdown (%)", statistics.getMaxDrawdown(last) * 100);
+    return result;
+  }
+
+  @Override
+  public RollingStatistics calculateRollingRisk(Map<LocalDate, Double> values, int x)
+          throws IllegalArgumentException {
+    TreeMap<LocalDate, Double> sorted = new TreeMap<>(values);
+    double[] points = new double[sorted.size()];
+    int i = 0;
+    for (double value : sorted.values()) {
+      points[i++] = value;
+    }
+    double periodsPerYear = RollingStatistics.TRADING_DAYS_PER_YEAR;
+    if (points.length > 1) {
+      double days = ChronoUnit.DAYS.between(sorted.firstKey(), sorted.lastKey());
+      periodsPerYear = 365.25 / (days / (points.length - 1));
+    }
+    return new RollingStatistics(points, x, periodsPerYear, 0);
+  }
+
+  @Override
+  public synchronized CovarianceMatrix calculateCovariance(Collection<String> tickers, int x)
+          throws IllegalArgumentException {
+    Set<String> sorted = new TreeSet<>();
+    for (String ticker : tickers) {
+      sorted.add(ticker.toUpperCase());
+    }
+    Map<String, PriceSeries> loaded = loadAll(sorted);
+    List<PriceSeries> histories = new ArrayList<>();
+    for (String ticker : sorted) {
+      PriceSeries history = loaded.get(ticker);
+      if (history == null) {
+        throw new IllegalArgumentException("No price data found for " + ticker);
       }
-      double movingAverage = sum / x;
+      histories.add(history);
+    }
+
+    String key = String.join(",", sorted) + "@" + x;
+    CovarianceEntry entry = covariances.get(key);
+    if (entry == null || !entry.isFor(histories)) {
+      entry = new CovarianceEntry(histories, CovarianceMatrix.compute(histories, x));
+      covariances.put(key, entry);
+    }
+    return entry.matrix;
+  }
+
+  /**
+   * A computed covariance matrix and the price histories it was computed
+   * from, so it is only reused while none of them has been replaced.
+   */
+  private static final class CovarianceEntry {
+    private final List<PriceSeries> histories;
+    private final CovarianceMatrix matrix;
 
-      if (getClosePrice(i) > movingAverage) {
-        result.add(dates.get(i));
+    private CovarianceEntry(List<PriceSeries> histories, CovarianceMatrix matrix) {
+      this.histories = histories;
+      this.matrix = matrix;
+    }
+
+    private boolean isFor(List<PriceSeries> current) {
+      for (int i = 0; i < histories.size(); i++) {
+        if (histories.get(i) != current.get(i)) {
+          return false;
+        }
       }
+      return true;
     }
-    return result;
+  }
+
+  /**
+   * Helper method that finds the row of a date that must be a trading day
+   * of the current stock.
+   *
+   * @param date represents the date
+   * @return the row of the date
+   * @throws IllegalArgumentException if the date isn't a trading day
+   */
+  private int tradingDay(String date) throws IllegalArgumentException {
+    int index = getDate(date);
+    if (index < 0) {
+      throw new IllegalArgumentException("The stock did not trade on " + date + ".");
+    }
+    return index;
+  }
+
+  /**
+   * Helper method that finds the first row of the 52 weeks ending on a row.
+   *
+   * @param to represents the last row of the 52 weeks
+   * @return the first row less than 52 weeks before it
+   */
+  private int yearBefore(int to) {
+    return series.floorIndex(series.getEpochDay(to) - 52 * 7) + 1;
+  }
+
+  /**
+   * Helper method that gets the indicator engine of the current stock, brought
+   * up to date with its history. An engine is kept per stock, so after a
+   * refresh only the new days are computed.
+   *
+   * @param x represents the number of days of the exponential moving average
+   * @return the indicator engine
+   */
+  private IndicatorEngine indicatorEngine(int x) {
+    IndicatorEngine engine = indicatorEngines.get(series.getTicker());
+    if (engine == null || engine.getEmaPeriod() != x) {
+      engine = new IndicatorEngine(series, x);
+      indicatorEngines.put(series.getTicker(), engine);
+    } else {
+      engine.update(series);
+    }
+    return engine;
   }
 
   @Override
@@ -347,19 +750,15 @@ public class StockModel implements Model {
 
     } else {
       // Check if the portfolio exists
-      int index = betterPortfolioExists(name);
-      if (index >= 0) {
-        BetterPortfolio p = betterProfile.get(index);
+      BetterPortfolio p = betterProfile.get(name);
+      if (p != null) {
         p.buyStock(ticker, shares, date);
         // add to existing
         saveDocumentToFile();
       } else {
-        // makes new stock list
-        ArrayList<Stock> stocks = new ArrayList<>();
-        // creates a new profile
-        betterProfile.add(new BetterPortfolio(stocks, name));
-        // gets the portfolio
-        BetterPortfolio p = betterProfile.get(betterPortfolioExists(name));
+        // creates a new profile with a new stock list
+        p = new BetterPortfolio(new ArrayList<>(), name);
+        betterProfile.add(p);
         p.buyStock(ticker, shares, date);
       }
     }
@@ -367,28 +766,27 @@ public class StockModel implements Model {
 
   @Override
   public int betterPortfolioExists(String name) {
-    for (int i = 0; i < betterProfile.size(); i++) {
-      if (betterProfile.get(i).getName().equals(name)) {
-        return i;
-      }
-    }
-    return -1;
+    return betterProfile.indexOf(name);
   }
 
   @Override
   public BetterPortfolio getBetterPortfolio(String name) {
-    return betterProfile.get(betterPortfolioExists(name));
+    BetterPortfolio portfolio = betterProfile.get(name);
+    if (portfolio == null) {
+      throw new IllegalArgumentException("This portfolio doesn't exist");
+    }
+    return portfolio;
   }
 
   @Override
   public int getPortfolioSize(String name) {
-    int i = this.betterPortfolioExists(name);
-    return betterProfile.get(i).getStocks().size();
+    return getBetterPortfolio(name).getStocks().size();
   }
 
   @Override
   public List<Double> rebalancePortfolio(String name, String date, List<Integer> weights) {
-    return this.getBetterPortfolio(name).rebalancePortfolio(date, weights);
+    return this.getBetterPortfolio(name).rebalancePortfolio(date, weights,
+            getClosingPrices(name, date));
   }
 
   @Override
@@ -408,6 +806,7 @@ public class StockModel implements Model {
   @Override
   public List<Double> getClosingPrices(String name, String date) {
     List<Double> closingPrices = new ArrayList<>();
+    loadAll(tickersOf(this.getBetterPortfolio(name)));
 
     for (Stock stock : this.getBetterPortfolio(name).getStocks()) {
       readURLFile(stock.getTicker());
@@ -417,16 +816,36 @@ public class StockModel implements Model {
     return closingPrices;
   }
 
-  /**
-   * Helper method that returns an instance of a stock model.
-   *
-   * @return a new stock model
-   */
-  protected static StockModel getInstance() {
-    if (instance == null) {
-      instance = new StockModel();
+  @Override
+  public BatchValuation valueBatch(List<String> names, List<String> dates)
+          throws IllegalArgumentException {
+    long start = System.nanoTime();
+    List<LocalDate> days = new ArrayList<>();
+    for (String date : dates) {
+      try {
+        days.add(LocalDate.parse(date));
+      } catch (DateTimeParseException e) {
+        throw new IllegalArgumentException("Invalid date format. Please use yyyy-MM-dd.");
+      }
     }
-    return instance;
+
+    List<BetterPortfolio> portfolios = new ArrayList<>();
+    Set<String> tickers = new LinkedHashSet<>();
+    for (String name : names) {
+      BetterPortfolio portfolio = getBetterPortfolio(name);
+      portfolios.add(portfolio);
+      for (String ticker : portfolio.getLedger().getTickers()) {
+        tickers.add(ticker.toUpperCase());
+      }
+    }
+    Map<String, PriceSeries> histories = loadAll(tickers);
+    for (String ticker : tickers) {
+      if (!histories.containsKey(ticker)) {
+        throw new IllegalArgumentException("No price data found for " + ticker);
+      }
+    }
+    return BatchValuation.compute(portfolios, days, histories, ForkJoinPool.commonPool(),
+            start);
   }
 
   @Override
@@ -437,61 +856,34 @@ public class StockModel implements Model {
   @Override
   public Map<LocalDate, Double> calculatePerformance(BetterPortfolio portfolio,
                                                      String startDate, String endDate) {
-    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
     List<LocalDate> timePoints = generateTimePoints(startDate, endDate);
-    Map<LocalDate, Double> performanceData = new TreeMap<>();
-
-    for (LocalDate date : timePoints) {
-      double totalValue = getValue(portfolio.getName(), date.format(formatter));
+    double[] values = valueOn(getBetterPortfolio(portfolio.getName()), timePoints);
 
-      performanceData.put(date, totalValue);
+    Map<LocalDate, Double> performanceData = new TreeMap<>();
+    for (int t = 0; t < timePoints.size(); t++) {
+      performanceData.put(timePoints.get(t), values[t]);
     }
-
     return performanceData;
   }
 
-  /**
-   * Helper method that checks whether the previous date is a validDate.
-   *
-   * @param date represents the date passed
-   * @return the index of the date
-   */
-  private int getPreviousValidDate(LocalDate date) {
-    while (getDate(date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"))) == -1
-            && !date.isAfter(LocalDate.parse(dates.get(0)))) {
-      date = date.minusDays(1);
-    }
-
-    date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-    return getDate(date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-  }
-
   @Override
   public Map<String, Double> getComposition(String date, String name)
           throws IllegalArgumentException {
-    if (betterPortfolioExists(name) > -1) {
-      return betterProfile.get(betterPortfolioExists(name)).getCompositionHelp(date);
-    } else {
-      throw new IllegalArgumentException("This portfolio doesn't exist");
-    }
+    return getBetterPortfolio(name).getCompositionHelp(date);
   }
 
   @Override
   public Map<String, Double> getDistribution(String date, String name)
           throws IllegalArgumentException {
     Map<String, Double> distribution = new HashMap<>();
-    if (betterPortfolioExists(name) > -1) {
-      BetterPortfolio temp = betterProfile.get(betterPortfolioExists(name));
-      for (Stock stock : temp.getStocks()) {
-        // of what stock though??
-        String s = stock.getTicker();
-        readURLFile(s);
-        double price = getClosePrice(getDate(date));
-        distribution = temp.getDistributionHelp(stock, date, price, distribution);
-      }
-    } else {
-      throw new IllegalArgumentException("This portfolio doesn't exist");
+    BetterPortfolio temp = getBetterPortfolio(name);
+    loadAll(tickersOf(temp));
+    for (Stock stock : temp.getStocks()) {
+      // of what stock though??
+      String s = stock.getTicker();
+      readURLFile(s);
+      double price = getClosePrice(getDate(date));
+      distribution = temp.getDistributionHelp(stock, date, price, distribution);
     }
     return distribution;
   }
@@ -622,13 +1014,12 @@ public class StockModel implements Model {
 
   @Override
   public double determineScale(Map<LocalDate, Double> performanceData) {
-    double maxValue = 0.0;
-
-    for (Double value : performanceData.values()) {
-      if (value > maxValue) {
-        maxValue = value;
-      }
+    double[] values = new double[performanceData.size()];
+    int i = 0;
+    for (double value : performanceData.values()) {
+      values[i++] = value;
     }
+    double maxValue = Math.max(0.0, Kernels.max(values, 0, values.length));
 
     return maxValue / 50.0;
   }
@@ -786,55 +1177,19 @@ public class StockModel implements Model {
   }
 
   @Override
-  public boolean checkValidTicker(String ticker) {
-    ticker = ticker.toUpperCase();
-    String apiKey = "ASDIVE6SCAN0YYZO";
-    URL url = null;
-    isUrl = true;
-
+  public boolean checkValidTicker(String ticker) throws IllegalArgumentException {
+    boolean known;
     try {
-      // Create the URL
-      url = new URL("https://www.alphavantage"
-              + ".co/query?function=TIME_SERIES_DAILY"
-              + "&outputsize=full"
-              + "&symbol=" + ticker
-              + "&apikey=" + apiKey
-              + "&datatype=csv");
-
-      // Check if the URL is valid by making a request
-      HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-      conn.setRequestMethod("GET");
-
-      int responseCode = conn.getResponseCode();
-      if (responseCode != HttpURLConnection.HTTP_OK) {
-        System.out.println("Invalid stock symbol or error in fetching data. Response code: " + responseCode);
-        isUrl = false;
-      }
-
-      // Check the content of the response
-      BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-      String inputLine;
-      StringBuffer content = new StringBuffer();
-      while ((inputLine = in.readLine()) != null) {
-        content.append(inputLine);
-      }
-      in.close();
-
-      // If the content contains "Invalid API call", the symbol is invalid
-      if (content.toString().contains("Invalid API call")) {
-        System.out.println("Invalid stock symbol.");
-        isUrl = false;
-      }
-    } catch (MalformedURLException e) {
-      System.out.println("Malformed URL but using downloaded version instead.");
-      isUrl = false;
+      // a symbol we hold prices for is known, whatever the registry says
+      known = ticker != null && (priceCache.contains(ticker.toUpperCase())
+              || tickerRegistry.isValid(ticker));
     } catch (IOException e) {
-      System.out.println("Error in connecting to the URL or reading data: " + e.getMessage());
-      isUrl = false;
+      // some failures, such as a refused connection, come without a message
+      String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+      throw new IllegalArgumentException("Could not look up " + ticker + ": " + reason);
     }
 
-
-    return ticker == null || ticker.equals("") || !isUrl;
+    return ticker == null || ticker.equals("") || !known;
   }
 
   @Override
@@ -37,6 +37,8 @@ public class StockView implements IStockView {
     displayMessage("2. Edit an existing portfolio", appendable);
     displayMessage("3. Rebalance an existing portfolio", appendable);
     displayMessage("4. View bar chart of an existing portfolio", appendable);
+    displayMessage("5. View risk statistics of an existing portfolio", appendable);
+    displayMessage("6. Value several portfolios on several dates", appendable);
     displayMessage("9. Return to original menu.", appendable);
     displayMessage("0. Quit program", appendable);
   }
@@ -92,6 +94,12 @@ public class StockView implements IStockView {
     displayMessage("1. Gain/Loss over a specified period", appendable);
     displayMessage("2. X-day moving average for a specified date", appendable);
     displayMessage("3. X-day crossovers over a specified date range", appendable);
+    displayMessage("4. Technical indicators (EMA, RSI, MACD, Bollinger, ATR) "
+            + "for a specified date", appendable);
+    displayMessage("5. Risk statistics (volatility, Sharpe ratio, max drawdown) "
+            + "over x days to a specified date", appendable);
+    displayMessage("6. Weekly, monthly, quarterly or yearly change over a specified "
+            + "date range", appendable);
     displayMessage("9. Return to original menu.", appendable);
     displayMessage("0. Quit program", appendable);
   }
@@ -140,6 +148,21 @@ public class StockView implements IStockView {
     displayMessage("Enter the value of x: ", appendable);
   }
 
+  @Override
+  public void getNames(Appendable appendable) {
+    displayMessage("Enter the names of the portfolios, separated by commas: ", appendable);
+  }
+
+  @Override
+  public void getDates(Appendable appendable) {
+    displayMessage("Enter the dates (yyyy-mm-dd), separated by commas: ", appendable);
+  }
+
+  @Override
+  public void getPeriod(Appendable appendable) {
+    displayMessage("Enter the period (weekly, monthly, quarterly or yearly): ", appendable);
+  }
+
   @Override
   public void displayResult(String result, Appendable appendable) {
     displayMessage(result, appendable);
@@ -0,0 +1,151 @@
+package stock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small local web server that answers Alpha Vantage TIME_SERIES_DAILY csv queries from
+ * another price source. It lets the network path ({@link HttpPriceSource}) be exercised
+ * and timed without the real api, its request limit or its latency. Requests and bytes
+ * served are counted, and a fixed delay can be added to each reply to imitate a slow
+ * connection.
+ */
+public class StubPriceServer implements AutoCloseable {
+  private static final int COMPACT_ROWS = 100;
+
+  private final HttpServer server;
+  private final PriceSource prices;
+  private final long delayMillis;
+  private final AtomicLong requests;
+  private final AtomicLong bytesServed;
+
+  /**
+   * Starts a server on a free local port.
+   *
+   * @param prices      represents the histories to serve
+   * @param delayMillis represents how long to wait before answering each request
+   * @throws IOException if the server can't be started
+   */
+  public StubPriceServer(PriceSource prices, long delayMillis) throws IOException {
+    this.prices = prices;
+    this.delayMillis = delayMillis;
+    this.requests = new AtomicLong();
+    this.bytesServed = new AtomicLong();
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            0);
+    this.server.createContext("/query", this::handle);
+    this.server.start();
+  }
+
+  /**
+   * Gets the query address to give an {@link HttpPriceSource}.
+   *
+   * @return the address of this server's query api
+   */
+  public String getBaseUrl() {
+    return "http://" + server.getAddress().getHostString() + ":"
+            + server.getAddress().getPort() + "/query";
+  }
+
+  /**
+   * Gets the number of requests answered so far.
+   *
+   * @return the number of requests
+   */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * Gets the number of response bytes sent so far.
+   *
+   * @return the number of bytes served
+   */
+  public long getBytesServed() {
+    return bytesServed.get();
+  }
+
+  /**
+   * Helper method that answers one query in the same csv layout as Alpha Vantage:
+   * newest day first, and a json error message for tickers it doesn't know.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    String ticker = query.getOrDefault("symbol", "").toUpperCase();
+
+    byte[] body;
+    String contentType;
+    PriceSeries series = ticker.isEmpty() ? null : prices.load(ticker);
+    if (series == null) {
+      body = ("{\n    \"Error Message\": \"Invalid API call. Please retry or visit the "
+              + "documentation for TIME_SERIES_DAILY.\"\n}").getBytes(StandardCharsets.UTF_8);
+      contentType = "application/json";
+    } else {
+      boolean full = "full".equals(query.get("outputsize"));
+      body = toCsv(series, full ? series.size() : COMPACT_ROWS);
+      contentType = "text/csv";
+    }
+
+    if (delayMillis > 0) {
+      try {
+        Thread.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+    bytesServed.addAndGet(body.length);
+  }
+
+  private static byte[] toCsv(PriceSeries series, int rows) {
+    StringBuilder csv = new StringBuilder("timestamp,open,high,low,close,volume\r\n");
+    int oldest = Math.max(0, series.size() - rows);
+    for (int i = series.size() - 1; i >= oldest; i--) {
+      csv.append(series.getDate(i)).append(',')
+              .append(series.getOpen(i)).append(',')
+              .append(series.getHigh(i)).append(',')
+              .append(series.getLow(i)).append(',')
+              .append(series.getClose(i)).append(',')
+              .append((long) series.getVolume(i)).append("\r\n");
+    }
+    return csv.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq > 0) {
+        query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return query;
+  }
+
+  /**
+   * Stops the server.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
@@ -0,0 +1,210 @@
+package stock;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Answers whether a ticker symbol names a real stock without downloading its history. The
+ * registry knows every symbol in a local listing file (the csv Alpha Vantage's
+ * LISTING_STATUS function returns, or any csv whose first column is the symbol), every
+ * stock with a csv or snapshot in the price directory, and every stock loaded since. Only a
+ * symbol it doesn't know is looked up on the web, by asking for the last hundred days
+ * rather than the full history, and the answer is remembered for a while: known symbols
+ * for a day, unknown ones for a few minutes in case they were mistyped and then listed.
+ */
+public class TickerRegistry {
+  /**
+   * The name of the listing file in the price directory.
+   */
+  public static final String LISTING_FILE = "listing_status.csv";
+
+  private static final Duration KNOWN_TTL = Duration.ofDays(1);
+  private static final Duration UNKNOWN_TTL = Duration.ofMinutes(10);
+  private static final Pattern SYMBOL = Pattern.compile("[A-Z0-9][A-Z0-9.\\-]{0,9}");
+
+  private final HttpPriceSource http;
+  private final Set<String> listed;
+  private final Map<String, Verdict> verdicts;
+  private long lookups;
+
+  /**
+   * Constructs a registry from the listing file and price files in a directory.
+   *
+   * @param http      represents the web api to look up unlisted symbols with
+   * @param directory represents the directory the listing and price files are kept in
+   * @throws UncheckedIOException if there is a listing file but it can't be read
+   */
+  public TickerRegistry(HttpPriceSource http, Path directory) {
+    this.http = http;
+    this.listed = ConcurrentHashMap.newKeySet();
+    this.verdicts = new ConcurrentHashMap<>();
+    readListing(directory.resolve(LISTING_FILE));
+    readPriceFiles(directory);
+  }
+
+  /**
+   * Helper method that adds the first column of every row of the listing file.
+   */
+  private void readListing(Path listing) {
+    try (BufferedReader reader = Files.newBufferedReader(listing)) {
+      reader.readLine();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int comma = line.indexOf(',');
+        add(comma < 0 ? line : line.substring(0, comma));
+      }
+    } catch (NoSuchFileException e) {
+      // no listing yet, so only the price files and web lookups are used
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read ticker listing: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Helper method that adds the ticker of every csv and snapshot in the directory.
+   */
+  private void readPriceFiles(Path directory) {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+            "*{.csv," + PriceSnapshot.EXTENSION + "}")) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (!name.equals(LISTING_FILE)) {
+          add(name.substring(0, name.lastIndexOf('.')));
+        }
+      }
+    } catch (IOException e) {
+      // a missing price directory just means nothing is stored locally
+    }
+  }
+
+  /**
+   * Records a symbol as known, for example after its history was loaded.
+   *
+   * @param ticker represents the ticker symbol
+   */
+  public void add(String ticker) {
+    String symbol = ticker.trim().toUpperCase(Locale.ROOT);
+    if (SYMBOL.matcher(symbol).matches()) {
+      listed.add(symbol);
+    }
+  }
+
+  /**
+   * Records several symbols as known.
+   *
+   * @param tickers represents the ticker symbols
+   */
+  public void addAll(Collection<String> tickers) {
+    for (String ticker : tickers) {
+      add(ticker);
+    }
+  }
+
+  /**
+   * Checks whether a symbol is known without going to the web.
+   *
+   * @param ticker represents the upper-case ticker symbol
+   * @return true if the symbol is listed or was found by a recent lookup
+   */
+  public boolean isKnown(String ticker) {
+    if (listed.contains(ticker)) {
+      return true;
+    }
+    Verdict verdict = verdicts.get(ticker);
+    return verdict != null && verdict.known && !verdict.isExpired();
+  }
+
+  /**
+   * Checks whether a symbol names a real stock. Malformed symbols are rejected at once,
+   * known ones are accepted at once, and anything else is looked up on the web unless a
+   * recent lookup already answered it. A lookup that fails, whether it couldn't connect or
+   * the api was throttling requests, is not remembered.
+   *
+   * @param ticker represents the ticker symbol, in any case
+   * @return true if the symbol names a stock
+   * @throws IOException if the symbol had to be looked up and the lookup failed
+   */
+  public boolean isValid(String ticker) throws IOException {
+    if (ticker == null) {
+      return false;
+    }
+    String symbol = ticker.trim().toUpperCase(Locale.ROOT);
+    if (!SYMBOL.matcher(symbol).matches()) {
+      return false;
+    }
+    if (listed.contains(symbol)) {
+      return true;
+    }
+    Verdict verdict = verdicts.get(symbol);
+    if (verdict != null && !verdict.isExpired()) {
+      return verdict.known;
+    }
+
+    synchronized (this) {
+      lookups++;
+    }
+    boolean known = http.loadRecent(symbol) != null;
+    verdicts.put(symbol, new Verdict(known, known ? KNOWN_TTL : UNKNOWN_TTL));
+    return known;
+  }
+
+  /**
+   * Forgets the remembered web lookups, so every unlisted symbol is looked up again.
+   */
+  public void clearLookups() {
+    verdicts.clear();
+  }
+
+  /**
+   * Gets the number of symbols known without a web lookup.
+   *
+   * @return the number of listed symbols
+   */
+  public int size() {
+    return listed.size();
+  }
+
+  /**
+   * Gets the number of times a symbol was looked up on the web.
+   *
+   * @return the number of web lookups
+   */
+  public synchronized long getLookups() {
+    return lookups;
+  }
+
+  @Override
+  public String toString() {
+    return "TickerRegistry[" + listed.size() + " listed, " + verdicts.size()
+            + " remembered lookups, " + getLookups() + " web lookups]";
+  }
+
+  /**
+   * The remembered answer of a web lookup and when it stops being trusted.
+   */
+  private static final class Verdict {
+    private final boolean known;
+    private final long expiresAt;
+
+    private Verdict(boolean known, Duration ttl) {
+      this.known = known;
+      this.expiresAt = System.nanoTime() + ttl.toNanos();
+    }
+
+    private boolean isExpired() {
+      return System.nanoTime() - expiresAt > 0;
+    }
+  }
+}
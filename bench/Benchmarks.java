@@ -0,0 +1,214 @@
+package stock;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A small, repeatable benchmark of the hot paths the performance work changed, so the numbers
+ * quoted for them can be checked on any machine. Each case is run a few times to warm up the
+ * JIT and then timed several more; the median is reported. Compile it together with the
+ * program and run it from the directory holding the csv files:
+ *
+ * <pre>
+ *   javac -d out *.java bench/*.java
+ *   java -cp out stock.Benchmarks
+ * </pre>
+ *
+ * <p>The kernels are timed with whichever loops {@link Kernels} picked at startup, so to
+ * compare the plain loops with the Vector API ones, run it again built and started with
+ * {@code --add-modules jdk.incubator.vector}, as described in vector/VectorKernels.java. An
+ * argument names a different csv to parse. This is a main class rather than a JMH
+ * harness because the project has no build to pull JMH in, so treat small differences as
+ * noise.
+ */
+public final class Benchmarks {
+  private static final int WARM_UP_RUNS = 5;
+  private static final int TIMED_RUNS = 9;
+
+  // results are added here so the JIT can't drop the work being timed
+  private static double sink;
+
+  private Benchmarks() {
+  }
+
+  /**
+   * Runs every benchmark.
+   *
+   * @param args represents an optional csv file to parse and compute on, IBM.csv by default
+   * @throws IOException if the csv files can't be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    Path csv = Paths.get(args.length > 0 ? args[0] : "IBM.csv");
+    System.out.println("JDK " + System.getProperty("java.version") + ", "
+            + Runtime.getRuntime().availableProcessors() + " cores");
+    csvParsing(csv);
+    PriceSeries series = CsvPriceParser.parse("BENCH", csv);
+    movingAverages(series);
+    kernels(1_000_000, 1);
+    kernels(10_000, 100);
+    System.out.println("(ignore " + sink + ")");
+  }
+
+  /**
+   * Times parsing a csv with the memory-mapped parser against reading it line by line with
+   * String.split and Double.parseDouble, for the given file and a synthetic million-row one.
+   */
+  private static void csvParsing(Path csv) throws IOException {
+    System.out.println("-- csv parsing");
+    Path synthetic = Files.createTempFile("bench", ".csv");
+    try {
+      writeSynthetic(synthetic, 1_000_000);
+      for (Path file : new Path[] {csv, synthetic}) {
+        int rows = CsvPriceParser.parse("BENCH", file).size();
+        String name = file == csv ? csv.getFileName().toString() : "synthetic";
+        report(name + " (" + rows + " rows), split and parseDouble", time(() -> {
+          sink += readWithSplit(file);
+        }));
+        report(name + " (" + rows + " rows), CsvPriceParser", time(() -> {
+          sink += CsvPriceParser.parse("BENCH", file).getClose(0);
+        }));
+      }
+    } finally {
+      Files.delete(synthetic);
+    }
+  }
+
+  /**
+   * Helper method that parses a csv the straightforward way, as a point of comparison.
+   */
+  private static double readWithSplit(Path file) throws IOException {
+    double total = 0;
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      reader.readLine();
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = line.split(",");
+        total += LocalDate.parse(fields[0]).toEpochDay();
+        for (int f = 1; f <= 4; f++) {
+          total += Double.parseDouble(fields[f]);
+        }
+        total += Double.parseDouble(fields[6]);
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Helper method that writes a csv of random prices, one row per calendar day.
+   */
+  private static void writeSynthetic(Path file, int rows) throws IOException {
+    Random random = new Random(42);
+    LocalDate day = LocalDate.of(1900, 1, 1);
+    double close = 100;
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writer.write("Date,Open,High,Low,Close,Adj Close,Volume\n");
+      for (int i = 0; i < rows; i++) {
+        double open = close;
+        close = Math.max(1, close * (1 + random.nextGaussian() * 0.01));
+        writer.write(String.format("%s,%.6f,%.6f,%.6f,%.6f,%.6f,%d%n", day, open,
+                Math.max(open, close) * 1.005, Math.min(open, close) * 0.995, close, close,
+                random.nextInt(1_000_000)));
+        day = day.plusDays(1);
+      }
+    }
+  }
+
+  /**
+   * Times the x-day average of every row from prefix sums against summing each window.
+   */
+  private static void movingAverages(PriceSeries series) throws IOException {
+    System.out.println("-- moving average of every row, " + series.size() + " rows");
+    for (int x : new int[] {5, 50, 200}) {
+      report("x=" + x + ", sum of each window", time(() -> {
+        for (int i = x - 1; i < series.size(); i++) {
+          double sum = 0;
+          for (int j = i - x + 1; j <= i; j++) {
+            sum += series.getClose(j);
+          }
+          sink += sum / x;
+        }
+      }));
+      report("x=" + x + ", MovingAverages.simple", time(() -> {
+        for (int i = x - 1; i < series.size(); i++) {
+          sink += MovingAverages.simple(series, i, x);
+        }
+      }));
+    }
+  }
+
+  /**
+   * Times the kernels over arrays of random values, printing the sum and dot product so the
+   * plain and Vector API loops can be checked to agree to rounding. Small arrays fit in cache, where the
+   * loops rather than memory set the pace, so each run calls the kernel several times.
+   */
+  private static void kernels(int length, int calls) throws IOException {
+    System.out.println("-- kernels, " + calls + " calls over " + length + " values, "
+            + (Kernels.isVectorized() ? "Vector API" : "plain loops"));
+    Random random = new Random(42);
+    double[] a = new double[length];
+    double[] b = new double[length];
+    for (int i = 0; i < length; i++) {
+      a[i] = 1 + random.nextDouble();
+      b[i] = 1 + random.nextDouble();
+    }
+    double[] out = new double[length - 1];
+    System.out.println("sum " + Kernels.sum(a, 0, length) + ", dot "
+            + Kernels.dot(a, b, 0, length));
+    report("sum", time(() -> {
+      for (int c = 0; c < calls; c++) {
+        sink += Kernels.sum(a, 0, length);
+      }
+    }));
+    report("dot", time(() -> {
+      for (int c = 0; c < calls; c++) {
+        sink += Kernels.dot(a, b, 0, length);
+      }
+    }));
+    report("max", time(() -> {
+      for (int c = 0; c < calls; c++) {
+        sink += Kernels.max(a, 0, length);
+      }
+    }));
+    report("returns", time(() -> {
+      for (int c = 0; c < calls; c++) {
+        Kernels.returns(a, out, out.length);
+        sink += out[c];
+      }
+    }));
+  }
+
+  /**
+   * Something to time that may throw.
+   */
+  private interface Task {
+    void run() throws IOException;
+  }
+
+  /**
+   * Helper method that warms a task up and returns the median of its timed runs.
+   */
+  private static double time(Task task) throws IOException {
+    for (int i = 0; i < WARM_UP_RUNS; i++) {
+      task.run();
+    }
+    double[] millis = new double[TIMED_RUNS];
+    for (int i = 0; i < TIMED_RUNS; i++) {
+      long start = System.nanoTime();
+      task.run();
+      millis[i] = (System.nanoTime() - start) / 1e6;
+    }
+    Arrays.sort(millis);
+    return millis[TIMED_RUNS / 2];
+  }
+
+  private static void report(String name, double millis) {
+    System.out.printf("%-60s %9.3f ms%n", name, millis);
+  }
+}
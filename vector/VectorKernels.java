@@ -0,0 +1,55 @@
+package stock;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The sum and dot product of {@link Kernels} written with the incubating Vector API, which
+ * adds as many values at once as the processor's widest registers hold and only combines
+ * the lanes at the end. This class is kept out of the main sources because it needs the
+ * incubator module at compile time; build it in and run with the module like this:
+ *
+ * <pre>
+ *   javac --add-modules jdk.incubator.vector -d out *.java vector/*.java
+ *   java --add-modules jdk.incubator.vector -cp out stock.StockProgram
+ * </pre>
+ *
+ * <p>{@link Kernels} loads it only when the module is present and falls back to its plain
+ * loops otherwise.
+ */
+final class VectorKernels implements Kernels.Reductions {
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  VectorKernels() {
+  }
+
+  @Override
+  public double sum(double[] a, int from, int to) {
+    DoubleVector lanes = DoubleVector.zero(SPECIES);
+    int i = from;
+    for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+      lanes = lanes.add(DoubleVector.fromArray(SPECIES, a, i));
+    }
+    double sum = lanes.reduceLanes(VectorOperators.ADD);
+    for (; i < to; i++) {
+      sum += a[i];
+    }
+    return sum;
+  }
+
+  @Override
+  public double dot(double[] a, double[] b, int from, int to) {
+    DoubleVector lanes = DoubleVector.zero(SPECIES);
+    int i = from;
+    for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+      lanes = DoubleVector.fromArray(SPECIES, a, i)
+              .fma(DoubleVector.fromArray(SPECIES, b, i), lanes);
+    }
+    double sum = lanes.reduceLanes(VectorOperators.ADD);
+    for (; i < to; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+}